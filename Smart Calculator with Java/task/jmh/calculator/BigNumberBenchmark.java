@@ -0,0 +1,83 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The *Jdk methods are the BigInteger baselines. BigInteger(String) is quadratic: at 10^7 digits
+// parseJdk takes the better part of an hour per shot, so leave it out there with -e parseJdk.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BigNumberBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int digits;
+
+    private String text;
+    private BigInteger value;
+    private BigInteger other;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(digits);
+        builder.append((char) ('1' + random.nextInt(9)));
+        for (int i = 1; i < digits; i++) {
+            builder.append((char) ('0' + random.nextInt(10)));
+        }
+        text = builder.toString();
+        value = Decimal.parse(text);
+        other = value.add(BigInteger.ONE).shiftLeft(7);
+    }
+
+    @Benchmark
+    public BigInteger parse() {
+        return Decimal.parse(text);
+    }
+
+    @Benchmark
+    public BigInteger parseJdk() {
+        return new BigInteger(text);
+    }
+
+    // Streams the digits to a writer, as the REPL and --batch print a result.
+    @Benchmark
+    public Writer format() throws IOException {
+        Writer out = Writer.nullWriter();
+        Decimal.write(value, out);
+        return out;
+    }
+
+    @Benchmark
+    public String formatJdk() {
+        return value.toString();
+    }
+
+    @Benchmark
+    public BigInteger multiply() {
+        return BigMath.multiply(value, other);
+    }
+
+    @Benchmark
+    public BigInteger multiplyJdk() {
+        return value.multiply(other);
+    }
+}
@@ -0,0 +1,78 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColumnBenchmark {
+
+    @Param({"a * b - c / d", "a + b - c + d"})
+    public String expression;
+
+    // the share of rows whose result overflows a long, in percent
+    @Param({"0", "1"})
+    public int overflow;
+
+    private static final int ROWS = 1 << 20;
+
+    private Session session;
+    private CompiledExpression compiled;
+    private Map<String, long[]> columns;
+    private long[] sink;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        session = new Calculator().newSession();
+        compiled = session.calculator().compile(expression);
+        Random random = new Random(42);
+        long[] a = new long[ROWS];
+        long[] b = new long[ROWS];
+        long[] c = new long[ROWS];
+        long[] d = new long[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            boolean big = random.nextInt(100) < overflow;
+            a[i] = big ? Long.MAX_VALUE - random.nextInt(10) : random.nextInt(1 << 20);
+            b[i] = big ? Long.MAX_VALUE / 2 : random.nextInt(1 << 20);
+            c[i] = random.nextInt(1 << 20);
+            d[i] = 1 + random.nextInt(1000);
+        }
+        columns = Map.of("a", a, "b", b, "c", c, "d", d);
+        sink = new long[ROWS];
+    }
+
+    // What callers do today: write every variable, then evaluate, once per row.
+    @Benchmark
+    public long[] rowByRow() throws CalculatorException {
+        Environment environment = session.environment();
+        long[] a = columns.get("a");
+        long[] b = columns.get("b");
+        long[] c = columns.get("c");
+        long[] d = columns.get("d");
+        for (int i = 0; i < ROWS; i++) {
+            environment.set("a", BigInteger.valueOf(a[i]));
+            environment.set("b", BigInteger.valueOf(b[i]));
+            environment.set("c", BigInteger.valueOf(c[i]));
+            environment.set("d", BigInteger.valueOf(d[i]));
+            sink[i] = compiled.evaluate(environment).longValue();
+        }
+        return sink;
+    }
+
+    @Benchmark
+    public ResultColumn columnar() throws CalculatorException {
+        return compiled.evaluate(session.environment(), columns);
+    }
+}
@@ -0,0 +1,69 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+// A batch of lines that share a costly BigInteger subexpression, run as --batch runs them, with the
+// memo, and as the REPL does, without it. Every line also repeats the subexpression, which the
+// assembler evaluates once either way.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CseBenchmark {
+
+    private static final int LINES = 100;
+
+    @Param({"(a * b - c) ^ 5", "a * b - c"})
+    public String shared;
+
+    private Session session;
+    private CompiledExpression[] lines;
+    private Memo memo;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        session = new Calculator().newSession();
+        session.execute("a = " + "7".repeat(60));
+        session.execute("b = " + "3".repeat(60));
+        session.execute("c = 12345");
+        lines = new CompiledExpression[LINES];
+        for (int i = 0; i < LINES; i++) {
+            String line = "(" + shared + ") * (" + shared + ") / (" + shared + " + " + (i + 1) + ")";
+            lines[i] = session.calculator().compile(line);
+        }
+        memo = new Memo(session.environment());
+    }
+
+    @Benchmark
+    public BigInteger memoized() throws CalculatorException {
+        Machine machine = session.environment().machine();
+        machine.memo(memo);
+        try {
+            return run();
+        } finally {
+            machine.memo(null);
+        }
+    }
+
+    @Benchmark
+    public BigInteger recomputed() throws CalculatorException {
+        return run();
+    }
+
+    private BigInteger run() throws CalculatorException {
+        BigInteger sum = BigInteger.ZERO;
+        for (CompiledExpression line : lines) {
+            sum = sum.add(line.evaluate(session.environment()));
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,67 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// A feed of lines of which a given percentage is malformed, answered as the REPL answers them:
+// through Session.run, which returns errors, and through Session.execute, which throws them.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ErrorBenchmark {
+
+    private static final int LINES = 1000;
+    private static final String[] INVALID = {"%d +* a", "(a + %d", "%d ) - b", "x + %d", "a = = %d", "%da = 1"};
+
+    @Param({"0", "30", "50"})
+    public int invalid;
+
+    private Session session;
+    private String[] lines;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        session = Expressions.session(new Calculator());
+        Random random = new Random(42);
+        lines = new String[LINES];
+        for (int i = 0; i < LINES; i++) {
+            // a hundred distinct valid lines, which stay in the expression cache
+            int number = random.nextInt(100);
+            lines[i] = random.nextInt(100) < invalid ? String.format(INVALID[i % INVALID.length], number)
+                    : "(a + " + number + ") * b - c";
+        }
+    }
+
+    @Benchmark
+    public int run() {
+        int errors = 0;
+        for (String line : lines) {
+            if (session.run(line).isError()) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+
+    @Benchmark
+    public int execute() {
+        int errors = 0;
+        for (String line : lines) {
+            try {
+                session.execute(line);
+            } catch (CalculatorException e) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,60 @@
+package calculator;
+
+import java.util.Random;
+
+final class Expressions {
+
+    private Expressions() {
+    }
+
+    static String generate(String shape) {
+        return switch (shape) {
+            case "tiny" -> "2 + 3 * a";
+            case "nested" -> nested(1000);
+            case "wide" -> wide(10_000);
+            case "huge" -> huge(5_000);
+            default -> throw new IllegalArgumentException(shape);
+        };
+    }
+
+    static Session session(Calculator calculator) throws CalculatorException {
+        Session session = calculator.newSession();
+        session.execute("a = 7");
+        session.execute("b = 3");
+        session.execute("c = 12345678901234567890123");
+        return session;
+    }
+
+    private static String nested(int depth) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            builder.append("(a + ");
+        }
+        builder.append('1');
+        for (int i = 0; i < depth; i++) {
+            builder.append(" - b)");
+        }
+        return builder.toString();
+    }
+
+    private static String wide(int operands) {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder().append(random.nextInt(1000));
+        for (int i = 1; i < operands; i++) {
+            builder.append(' ').append("+-*/".charAt(random.nextInt(4))).append(' ');
+            builder.append(random.nextBoolean() ? String.valueOf(1 + random.nextInt(1000)) : "ab".substring(i % 2, i % 2 + 1));
+        }
+        return builder.toString();
+    }
+
+    private static String huge(int digits) {
+        Random random = new Random(42);
+        StringBuilder x = new StringBuilder().append(1 + random.nextInt(9));
+        StringBuilder y = new StringBuilder().append(1 + random.nextInt(9));
+        for (int i = 1; i < digits; i++) {
+            x.append(random.nextInt(10));
+            y.append(random.nextInt(10));
+        }
+        return x + " * " + y + " - c * (" + y + " + " + x + ") / b";
+    }
+}
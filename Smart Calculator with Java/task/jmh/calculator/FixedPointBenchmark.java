@@ -0,0 +1,94 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// A pricing formula over a column of prices and quantities: on integers, in --scale 6 fixed point,
+// and with BigDecimal rounded to the same 6 places after every step.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FixedPointBenchmark {
+
+    private static final String EXPRESSION = "price * quantity * (1 - discount) / rate + fee";
+    private static final int SCALE = 6;
+    private static final int ROWS = 1 << 16;
+
+    private Session integer;
+    private Session fixedPoint;
+    private CompiledExpression integerExpression;
+    private CompiledExpression fixedPointExpression;
+    private Map<String, long[]> integerColumns;
+    private Map<String, long[]> fixedPointColumns;
+    private BigDecimal[] prices;
+    private BigDecimal[] quantities;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        integer = new Calculator().newSession();
+        integer.execute("discount = 0");
+        integer.execute("rate = 1");
+        integer.execute("fee = 2");
+        integerExpression = integer.calculator().compile(EXPRESSION);
+        fixedPoint = new Calculator(Calculator.CACHE_SIZE, SCALE).newSession();
+        fixedPoint.execute("discount = 0.075");
+        fixedPoint.execute("rate = 1.0842");
+        fixedPoint.execute("fee = 2.5");
+        fixedPointExpression = fixedPoint.calculator().compile(EXPRESSION);
+
+        Random random = new Random(42);
+        long[] price = new long[ROWS];
+        long[] quantity = new long[ROWS];
+        long[] scaledPrice = new long[ROWS];
+        long[] scaledQuantity = new long[ROWS];
+        prices = new BigDecimal[ROWS];
+        quantities = new BigDecimal[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            price[i] = 1 + random.nextInt(100_000);
+            quantity[i] = 1 + random.nextInt(10_000);
+            scaledPrice[i] = price[i] * 1_000_000 + random.nextInt(1_000_000);
+            scaledQuantity[i] = quantity[i] * 1_000_000;
+            prices[i] = BigDecimal.valueOf(scaledPrice[i], SCALE);
+            quantities[i] = BigDecimal.valueOf(scaledQuantity[i], SCALE);
+        }
+        integerColumns = Map.of("price", price, "quantity", quantity);
+        fixedPointColumns = Map.of("price", scaledPrice, "quantity", scaledQuantity);
+    }
+
+    @Benchmark
+    public ResultColumn integer() throws CalculatorException {
+        return integerExpression.evaluate(integer.environment(), integerColumns);
+    }
+
+    @Benchmark
+    public ResultColumn fixedPoint() throws CalculatorException {
+        return fixedPointExpression.evaluate(fixedPoint.environment(), fixedPointColumns);
+    }
+
+    @Benchmark
+    public BigDecimal[] bigDecimal() {
+        BigDecimal one = BigDecimal.ONE;
+        BigDecimal discount = new BigDecimal("0.075");
+        BigDecimal rate = new BigDecimal("1.0842");
+        BigDecimal fee = new BigDecimal("2.5");
+        BigDecimal[] results = new BigDecimal[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            BigDecimal value = prices[i].multiply(quantities[i]).setScale(SCALE, RoundingMode.HALF_UP);
+            value = value.multiply(one.subtract(discount)).setScale(SCALE, RoundingMode.HALF_UP);
+            value = value.divide(rate, SCALE, RoundingMode.HALF_UP);
+            results[i] = value.add(fee);
+        }
+        return results;
+    }
+}
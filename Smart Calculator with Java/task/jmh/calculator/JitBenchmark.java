@@ -0,0 +1,51 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JitBenchmark {
+
+    private static final String EXPRESSION = "(a + 3) * (b - a) / 7 - -(a * b) + 12 * (b - 5)";
+
+    private Program program;
+    private Machine machine;
+    private Bindings[] rows;
+    private int row;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        program = Program.assemble(Optimizer.optimize(Parser.compile(EXPRESSION)), new SymbolTable());
+        machine = new Machine();
+        rows = new Bindings[1024];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Bindings(2);
+            rows[i].values[0] = i * 31L;
+            rows[i].values[1] = 1000 - i;
+        }
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Dcalculator.jit.threshold=-1")
+    public long interpreted() throws CalculatorException {
+        machine.execute(program, rows[row++ & 1023]);
+        return machine.longResult();
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Dcalculator.jit.threshold=1000")
+    public long compiled() throws CalculatorException {
+        machine.execute(program, rows[row++ & 1023]);
+        return machine.longResult();
+    }
+}
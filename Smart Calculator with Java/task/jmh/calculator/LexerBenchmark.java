@@ -0,0 +1,76 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LexerBenchmark {
+
+    private static final int SIZE = 1 << 20;
+
+    @Param({"mixed", "number"})
+    public String shape;
+
+    private String input;
+
+    @Setup
+    public void setUp() {
+        input = shape.equals("mixed") ? mixed(SIZE) : "7".repeat(SIZE / 16);
+    }
+
+    @Benchmark
+    public int lexer() {
+        Lexer lexer = new Lexer(input);
+        int tokens = 0;
+        while (lexer.next() != Lexer.Token.END) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    // The tokenizer the lexer replaced: strip with a regex, then grow each token with String.concat.
+    @Benchmark
+    public int legacy() {
+        String input = this.input.replaceAll("\\s+", "");
+        int tokens = input.split("=").length;
+        String token = "";
+        for (char ch : input.toCharArray()) {
+            if (Character.isDigit(ch) || Character.isLetter(ch)) {
+                token = token.concat(String.valueOf(ch));
+            } else {
+                if (!token.isEmpty()) {
+                    tokens++;
+                    token = "";
+                }
+                tokens++;
+            }
+        }
+        return token.isEmpty() ? tokens : tokens + 1;
+    }
+
+    private static String mixed(int size) {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(size + 32);
+        builder.append(random.nextInt(1000));
+        while (builder.length() < size) {
+            builder.append(' ').append("+-*/".charAt(random.nextInt(4))).append(' ');
+            if (random.nextBoolean()) {
+                builder.append("abcdefgh", 0, 1 + random.nextInt(8));
+            } else {
+                builder.append('(').append(random.nextInt(1_000_000)).append(" - ").append(random.nextInt(10)).append(')');
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// The same cached line with the probes compiled out and with them recording.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsBenchmark {
+
+    private Session session;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        session = Expressions.session(new Calculator());
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Dcalculator.metrics=false")
+    public String disabled() {
+        return Main.respond(session, "(a + 3) * b - 7");
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Dcalculator.metrics=true")
+    public String enabled() {
+        return Main.respond(session, "(a + 3) * b - 7");
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Dcalculator.metrics=false")
+    public String disabledUncached() {
+        return Main.respond(session, "(a + 3) * b - " + (System.nanoTime() & 1023));
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Dcalculator.metrics=true")
+    public String enabledUncached() {
+        return Main.respond(session, "(a + 3) * b - " + (System.nanoTime() & 1023));
+    }
+}
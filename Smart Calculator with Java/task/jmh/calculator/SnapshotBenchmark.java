@@ -0,0 +1,65 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SnapshotBenchmark {
+
+    @Param({"10000", "2000000"})
+    public int variables;
+
+    private Session session;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        session = new Calculator().newSession();
+        BigInteger big = BigInteger.TEN.pow(40);
+        for (int i = 0; i < variables; i++) {
+            session.environment().set(name(i), i % 16 == 0 ? big.add(BigInteger.valueOf(i)) : BigInteger.valueOf(i));
+        }
+        file = Files.createTempFile("calculator", ".snapshot");
+        Snapshot.save(session.environment(), 0, file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int save() throws IOException {
+        return Snapshot.save(session.environment(), 0, file);
+    }
+
+    // A warm start: a new calculator, so every name is interned again.
+    @Benchmark
+    public int load() throws IOException, CalculatorException {
+        return Snapshot.load(new Calculator().newSession(), file);
+    }
+
+    private static String name(int index) {
+        StringBuilder builder = new StringBuilder();
+        do {
+            builder.append((char) ('a' + index % 26));
+            index /= 26;
+        } while (index > 0);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StageBenchmark {
+
+    @Param({"tiny", "nested", "wide", "huge"})
+    public String shape;
+
+    private String input;
+    private List<Element> infix;
+    private List<Element> postfix;
+    private Program program;
+    private Bindings arguments;
+    private Machine machine;
+    private SymbolTable symbols;
+    private Session session;
+    private Session uncached;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        input = Expressions.generate(shape);
+        infix = Parser.parse(input);
+        postfix = Parser.convertToPostfix(infix);
+        session = Expressions.session(new Calculator());
+        program = session.calculator().compile(input).program();
+        arguments = new Bindings(program.slots.length);
+        Machine.bind(program, session.environment(), arguments);
+        symbols = new SymbolTable();
+        machine = new Machine();
+        uncached = Expressions.session(new Calculator(0));
+    }
+
+    @Benchmark
+    public void lex(Blackhole blackhole) {
+        Lexer lexer = new Lexer(input);
+        Lexer.Token token;
+        while ((token = lexer.next()) != Lexer.Token.END) {
+            blackhole.consume(token);
+        }
+    }
+
+    @Benchmark
+    public List<Element> parse() throws CalculatorException {
+        return Parser.parse(input);
+    }
+
+    @Benchmark
+    public List<Element> shuntingYard() throws CalculatorException {
+        return Parser.convertToPostfix(infix);
+    }
+
+    @Benchmark
+    public Program assemble() throws CalculatorException {
+        return Program.assemble(postfix, symbols);
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) throws CalculatorException {
+        machine.execute(program, arguments);
+        blackhole.consume(machine.fitsLong() ? machine.longResult() : machine.bigResult());
+    }
+
+    @Benchmark
+    public BigInteger endToEnd() throws CalculatorException {
+        return session.execute(input);
+    }
+
+    @Benchmark
+    public BigInteger endToEndUncached() throws CalculatorException {
+        return uncached.execute(input);
+    }
+}
@@ -0,0 +1,113 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+// Time to first result of a fresh JVM: the REPL of Main.main fed one line, calc -e, and calc -e with
+// an AppCDS archive dumped in the setup as the appCds task dumps it. Each measurement starts a process
+// and stops at its first line of output; waiting for the process to exit is not measured.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+
+    private static final String EXPRESSION = "2 + 3 * (4 - 1) ^ 2";
+
+    @Param({"repl", "oneShot", "oneShotCds"})
+    public String mode;
+
+    private Path directory;
+    private List<String> command;
+    private Process process;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException, URISyntaxException {
+        directory = Files.createTempDirectory("calculator");
+        // AppCDS only archives classes loaded from jars
+        Path jar = jar(Path.of(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        command = new ArrayList<>(List.of(java, "-cp", jar.toString(), "calculator.Main"));
+        if (!mode.equals("repl")) {
+            command.addAll(List.of("-e", EXPRESSION));
+        }
+        if (mode.equals("oneShotCds")) {
+            Path archive = directory.resolve("calc.jsa");
+            List<String> dump = new ArrayList<>(command);
+            dump.add(1, "-XX:ArchiveClassesAtExit=" + archive);
+            if (new ProcessBuilder(dump).inheritIO().start().waitFor() != 0 || !Files.exists(archive)) {
+                throw new IllegalStateException("Cannot dump " + archive);
+            }
+            command.add(1, "-XX:SharedArchiveFile=" + archive);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted((x, y) -> y.compareTo(x)).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void exit() throws InterruptedException {
+        process.waitFor();
+    }
+
+    @Benchmark
+    public String firstResult() throws IOException {
+        process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        if (mode.equals("repl")) {
+            try (OutputStream in = process.getOutputStream()) {
+                in.write((EXPRESSION + "\n/exit\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String result = out.readLine();
+        if (!"29".equals(result)) {
+            throw new IllegalStateException("Unexpected output " + result);
+        }
+        return result;
+    }
+
+    // The classes of the calculator as a jar, or location itself when it is a jar already.
+    private Path jar(Path location) throws IOException {
+        if (!Files.isDirectory(location)) {
+            return location;
+        }
+        Path jar = directory.resolve("calc.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+             Stream<Path> files = Files.walk(location.resolve("calculator"))) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                out.putNextEntry(new ZipEntry(location.relativize(file).toString().replace('\\', '/')));
+                Files.copy(file, out);
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
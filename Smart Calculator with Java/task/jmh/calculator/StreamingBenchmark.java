@@ -0,0 +1,52 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+// Run with -prof gc: the materialized pipeline allocates several lists as long as the expression,
+// the streaming evaluator only its stacks and the token it is reading.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StreamingBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int terms;
+
+    private Session session;
+    private String expression;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        session = new Calculator().newSession();
+        session.execute("x = 7");
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < terms; i++) {
+            builder.append(i % 1000).append(i % 3 == 0 ? " * (x - 2) + " : " - x / 3 + ");
+        }
+        expression = builder.append('1').toString();
+    }
+
+    // Parse, postfix, optimize and assemble, then run the program, as an uncached Session.execute does.
+    @Benchmark
+    public BigInteger materialized() throws CalculatorException {
+        return new CompiledExpression(expression, Optimizer.optimize(Parser.compile(expression)),
+                session.environment().symbols()).evaluate(session.environment());
+    }
+
+    @Benchmark
+    public BigInteger streaming() throws IOException, CalculatorException {
+        return session.evaluate(new StringReader(expression));
+    }
+}
@@ -0,0 +1,66 @@
+package calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WriteAheadLogBenchmark {
+
+    @Param({"false", "true"})
+    public boolean logged;
+
+    private Session session;
+    private Path directory;
+    private WriteAheadLog log;
+    private long counter;
+
+    @Setup
+    public void setUp() throws IOException {
+        session = new Calculator().newSession();
+        directory = Files.createTempDirectory("calculator-wal");
+        if (logged) {
+            log = WriteAheadLog.open(directory, session);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void groupCommit() {
+        session.environment().set("abc", BigInteger.valueOf(counter++));
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = "-Dcalculator.wal.sync=true")
+    public void syncEachAssignment() {
+        session.environment().set("abc", BigInteger.valueOf(counter++));
+    }
+}
@@ -0,0 +1,331 @@
+package calculator;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import calculator.SubexpressionTable.Node;
+
+// Turns postfix into a Program in two passes. The first hash-conses the postfix into a DAG, so a
+// subexpression that occurs several times becomes one node; the second emits the DAG depth first,
+// left to right, evaluating a shared node once and keeping its value in a temporary (SAVE) for its
+// later uses (RESTORE). Values are computed in the same order as the postfix, minus the repeats,
+// so the first error is still the same.
+// Given a SubexpressionTable, a subtree that an earlier program already contained and that reads a
+// variable is wrapped in MEMO ... REMEMBER, so a batch can reuse its value from an earlier line.
+// With a scale, *, / and ^ become their fixed-point opcodes, which take 10^scale as a third operand.
+// Names are looked up rather than interned, so a line that reads unknown names adds nothing to the
+// symbol table; such a name gets a negative slot, and its program is not memoized.
+final class Assembler {
+
+    private final SymbolTable symbols;
+    private final SubexpressionTable table;
+    private final int mark;
+    private final long factor;
+
+    private final Map<Node, Integer> ids = new HashMap<>();
+    private final Map<Integer, String> variables = new HashMap<>();
+    private final Map<String, Integer> unknown = new HashMap<>();
+    private Node[] nodes;
+    private boolean[] readsVariable;
+    private int[] globalIds;
+    private int count;
+
+    private int[] code = new int[16];
+    private int length;
+
+    private Assembler(SymbolTable symbols, SubexpressionTable table, int scale, int size) {
+        this.symbols = symbols;
+        this.table = table;
+        this.mark = table == null ? 0 : table.mark();
+        this.factor = FixedPoint.factor(scale).longValueExact();
+        nodes = new Node[Math.max(size, 1)];
+        readsVariable = new boolean[nodes.length];
+        globalIds = new int[nodes.length];
+    }
+
+    static Program assemble(List<Element> postfix, SymbolTable symbols, SubexpressionTable table, int scale)
+            throws CalculatorException {
+        Assembler assembler = new Assembler(symbols, resolved(postfix, symbols) ? table : null, scale, postfix.size());
+        return assembler.emit(assembler.build(postfix));
+    }
+
+    // Whether every variable in postfix has a slot.
+    private static boolean resolved(List<Element> postfix, SymbolTable symbols) {
+        for (Element element : postfix) {
+            if (element.type == Type.VARIABLE && symbols.lookup(((Variable) element).variable) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int build(List<Element> postfix) throws CalculatorException {
+        int[] stack = new int[postfix.size()];
+        int depth = 0;
+        for (Element element : postfix) {
+            switch (element.type) {
+                case NUMBER -> {
+                    Number number = (Number) element;
+                    stack[depth++] = number.small ? node(Program.PUSH, number.value, null, -1, -1, -1)
+                            : node(Program.PUSH_BIG, 0, number.number, -1, -1, -1);
+                }
+                case VARIABLE -> {
+                    String variable = ((Variable) element).variable;
+                    int slot = symbols.lookup(variable);
+                    if (slot < 0) {
+                        slot = unknown.computeIfAbsent(variable, name -> -2 - unknown.size());
+                    }
+                    variables.put(slot, variable);
+                    stack[depth++] = node(Program.LOAD, slot, null, -1, -1, -1);
+                }
+                case BINARY_OPERATOR -> {
+                    if (depth < 2) {
+                        throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+                    }
+                    int opcode = Program.opcode(((BinaryOperator) element).operation);
+                    int y = stack[--depth];
+                    Node x = nodes[stack[depth - 1]];
+                    int scaled = factor == 1 ? -1 : switch (opcode) {
+                        case Program.MULTIPLY -> Program.MULTIPLY_SCALED;
+                        case Program.DIVIDE -> Program.DIVIDE_SCALED;
+                        case Program.POWER -> Program.POWER_SCALED;
+                        default -> -1;
+                    };
+                    if (scaled >= 0) {
+                        int one = node(Program.PUSH, factor, null, -1, -1, -1);
+                        stack[depth - 1] = node(scaled, 0, null, stack[depth - 1], y, one);
+                    } else if (opcode == Program.REMAINDER && x.opcode() == Program.POWER) {
+                        // x ^ y % m: reduce modulo m while raising to the power
+                        stack[depth - 1] = node(Program.POWER_MOD, 0, null, x.x(), x.y(), y);
+                    } else {
+                        stack[depth - 1] = node(opcode, 0, null, stack[depth - 1], y, -1);
+                    }
+                }
+                case UNARY_OPERATOR -> {
+                    if (depth < 1) {
+                        throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+                    }
+                    if (((UnaryOperator) element).operation != Operation.PLUS) {
+                        stack[depth - 1] = node(Program.NEGATE, 0, null, stack[depth - 1], -1, -1);
+                    }
+                }
+                default -> throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+            }
+        }
+        if (depth != 1) {
+            throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+        }
+        return stack[0];
+    }
+
+    private int node(int opcode, long operand, BigInteger big, int x, int y, int z) {
+        Node node = new Node(opcode, operand, big, x, y, z);
+        Integer id = ids.get(node);
+        if (id != null) {
+            return id;
+        }
+        if (count == nodes.length) {
+            nodes = Arrays.copyOf(nodes, count * 2);
+            readsVariable = Arrays.copyOf(readsVariable, count * 2);
+            globalIds = Arrays.copyOf(globalIds, count * 2);
+        }
+        nodes[count] = node;
+        readsVariable[count] = opcode == Program.LOAD || reads(x) || reads(y) || reads(z);
+        if (table != null) {
+            globalIds[count] = table.intern(new Node(opcode, operand, big, global(x), global(y), global(z)));
+        }
+        ids.put(node, count);
+        return count++;
+    }
+
+    private boolean reads(int id) {
+        return id >= 0 && readsVariable[id];
+    }
+
+    private int global(int id) {
+        return id < 0 ? -1 : globalIds[id];
+    }
+
+    private Program emit(int root) {
+        int[] references = references(root);
+        List<Long> constants = new ArrayList<>();
+        List<BigInteger> bigConstants = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        Map<Integer, Integer> arguments = new HashMap<>();
+        List<Integer> memoIds = new ArrayList<>();
+        List<int[]> memoSlots = new ArrayList<>();
+
+        int[] temps = new int[count];
+        Arrays.fill(temps, -1);
+        int tempCount = 0;
+        boolean[] saved = new boolean[count];
+        // nodes saved so far, so a memoized subtree can forget the ones it computed
+        int[] savedLog = new int[count];
+        int savedCount = 0;
+        int[] memoStart = new int[count];
+        int[] memoJump = new int[count];
+        Arrays.fill(memoJump, -1);
+        boolean memoizing = false;
+
+        // a node id to visit, or ~id once its operands are emitted
+        int[] stack = new int[16];
+        int top = 0;
+        stack[0] = root;
+        while (top >= 0) {
+            int entry = stack[top--];
+            if (entry >= 0) {
+                Node node = nodes[entry];
+                if (saved[entry]) {
+                    append(Program.RESTORE, temps[entry]);
+                    continue;
+                }
+                switch (node.opcode()) {
+                    case Program.PUSH -> {
+                        append(Program.PUSH, constants.size());
+                        constants.add(node.operand());
+                        continue;
+                    }
+                    case Program.PUSH_BIG -> {
+                        append(Program.PUSH_BIG, bigConstants.size());
+                        bigConstants.add(node.big());
+                        continue;
+                    }
+                    case Program.LOAD -> {
+                        int slot = (int) node.operand();
+                        Integer argument = arguments.get(slot);
+                        if (argument == null) {
+                            argument = names.size();
+                            arguments.put(slot, argument);
+                            names.add(variables.get(slot));
+                            slots.add(slot);
+                        }
+                        append(Program.LOAD, argument);
+                        continue;
+                    }
+                    default -> {
+                    }
+                }
+                if (!memoizing && table != null && globalIds[entry] < mark && readsVariable[entry]) {
+                    memoizing = true;
+                    memoStart[entry] = savedCount;
+                    append(Program.MEMO, memoIds.size());
+                    append(-1);
+                    memoJump[entry] = length - 1;
+                    memoIds.add(globalIds[entry]);
+                    memoSlots.add(slotsRead(entry));
+                }
+                if (top + 4 >= stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[++top] = ~entry;
+                if (node.z() >= 0) {
+                    stack[++top] = node.z();
+                }
+                if (node.y() >= 0) {
+                    stack[++top] = node.y();
+                }
+                stack[++top] = node.x();
+            } else {
+                int id = ~entry;
+                append(nodes[id].opcode());
+                if (memoJump[id] >= 0) {
+                    append(Program.REMEMBER, code[memoJump[id] - 1]);
+                    code[memoJump[id]] = length;
+                    memoizing = false;
+                    // a hit skips the subtree, so what it saved cannot be used after it
+                    while (savedCount > memoStart[id]) {
+                        saved[savedLog[--savedCount]] = false;
+                    }
+                }
+                if (references[id] > 1) {
+                    if (temps[id] < 0) {
+                        temps[id] = tempCount++;
+                    }
+                    append(Program.SAVE, temps[id]);
+                    saved[id] = true;
+                    savedLog[savedCount++] = id;
+                }
+            }
+        }
+
+        long[] constantValues = new long[constants.size()];
+        for (int i = 0; i < constantValues.length; i++) {
+            constantValues[i] = constants.get(i);
+        }
+        return new Program(Arrays.copyOf(code, length), constantValues, bigConstants.toArray(new BigInteger[0]),
+                names.toArray(new String[0]), toArray(slots), tempCount,
+                toArray(memoIds), memoSlots.toArray(new int[0][]));
+    }
+
+    // The number of distinct nodes that use each node, counting only nodes reachable from root.
+    private int[] references(int root) {
+        int[] references = new int[count];
+        boolean[] visited = new boolean[count];
+        int[] stack = new int[count];
+        int top = 0;
+        stack[0] = root;
+        visited[root] = true;
+        while (top >= 0) {
+            Node node = nodes[stack[top--]];
+            for (int operand : new int[]{node.x(), node.y(), node.z()}) {
+                if (operand >= 0) {
+                    references[operand]++;
+                    if (!visited[operand]) {
+                        visited[operand] = true;
+                        stack[++top] = operand;
+                    }
+                }
+            }
+        }
+        return references;
+    }
+
+    // The symbol table slots of the variables read under id.
+    private int[] slotsRead(int id) {
+        boolean[] visited = new boolean[count];
+        int[] stack = new int[count];
+        List<Integer> slots = new ArrayList<>();
+        int top = 0;
+        stack[0] = id;
+        visited[id] = true;
+        while (top >= 0) {
+            Node node = nodes[stack[top--]];
+            if (node.opcode() == Program.LOAD) {
+                slots.add((int) node.operand());
+            }
+            for (int operand : new int[]{node.x(), node.y(), node.z()}) {
+                if (operand >= 0 && !visited[operand]) {
+                    visited[operand] = true;
+                    stack[++top] = operand;
+                }
+            }
+        }
+        return toArray(slots);
+    }
+
+    // Not a stream: the lambda bootstrap would be most of the startup of calc -e.
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private void append(int opcode, int operand) {
+        append(opcode);
+        append(operand);
+    }
+
+    private void append(int value) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, length * 2);
+        }
+        code[length++] = value;
+    }
+}
@@ -0,0 +1,62 @@
+package calculator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class Batch {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Session session;
+
+    Batch(Session session) {
+        this.session = session;
+    }
+
+    void run(Path in, Path out) throws IOException {
+        long start = System.nanoTime();
+        long lines = 0;
+        // lines of a batch often repeat subexpressions of earlier lines over the same variables
+        Machine machine = session.environment().machine();
+        machine.memo(new Memo(session.environment()));
+        try (BufferedReader reader = Files.newBufferedReader(in, StandardCharsets.UTF_8);
+             Writer writer = open(out)) {
+            String input;
+            while ((input = reader.readLine()) != null) {
+                lines++;
+                if (Metrics.ENABLED) {
+                    Metrics.lines(1);
+                }
+                if (input.equals("/exit")) {
+                    writer.write("Bye!");
+                    writer.write(System.lineSeparator());
+                    break;
+                }
+                if (Main.respond(session, input, writer)) {
+                    writer.write(System.lineSeparator());
+                }
+            }
+        } finally {
+            machine.memo(null);
+        }
+        report(lines, System.nanoTime() - start);
+    }
+
+    static Writer open(Path out) throws IOException {
+        if (out == null) {
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+        return new BufferedWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    static void report(long lines, long nanos) {
+        double seconds = nanos / 1e9;
+        System.err.printf("%d lines in %.3f s (%.0f lines/s)%n", lines, seconds, lines / seconds);
+    }
+}
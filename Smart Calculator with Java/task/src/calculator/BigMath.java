@@ -0,0 +1,73 @@
+package calculator;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Products of huge numbers on all cores: the top levels of a Karatsuba split run their three
+// sub-products as fork/join tasks, and BigInteger.multiply (Toom-Cook 3 at these sizes) does the
+// rest. Smaller operands, or a single core, go straight to BigInteger.multiply.
+final class BigMath {
+
+    static final int PARALLEL_BITS = Integer.getInteger("calculator.multiply.parallelBits", 1 << 18);
+
+    private BigMath() {
+    }
+
+    static BigInteger multiply(BigInteger x, BigInteger y) {
+        if (Math.min(x.bitLength(), y.bitLength()) < PARALLEL_BITS || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return x.multiply(y);
+        }
+        return ForkJoinPool.commonPool().invoke(new Product(x, y));
+    }
+
+    // x^exponent by repeated squaring, with each step multiplied as above.
+    static BigInteger pow(BigInteger x, int exponent) {
+        if ((long) x.bitLength() * exponent < 2L * PARALLEL_BITS || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return x.pow(exponent);
+        }
+        BigInteger result = x;
+        for (int bit = Integer.SIZE - 2 - Integer.numberOfLeadingZeros(exponent); bit >= 0; bit--) {
+            result = multiply(result, result);
+            if ((exponent >>> bit & 1) != 0) {
+                result = multiply(result, x);
+            }
+        }
+        return result;
+    }
+
+    private static final class Product extends RecursiveTask<BigInteger> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BigInteger x;
+        private final BigInteger y;
+
+        Product(BigInteger x, BigInteger y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            if (Math.min(x.bitLength(), y.bitLength()) < PARALLEL_BITS) {
+                return x.multiply(y);
+            }
+            // x = x1 * 2^half + x0, y = y1 * 2^half + y0
+            int half = (Math.max(x.bitLength(), y.bitLength()) / 2 + 31) & ~31;
+            BigInteger x1 = x.abs().shiftRight(half);
+            BigInteger x0 = x.abs().subtract(x1.shiftLeft(half));
+            BigInteger y1 = y.abs().shiftRight(half);
+            BigInteger y0 = y.abs().subtract(y1.shiftLeft(half));
+            Product high = new Product(x1, y1);
+            Product low = new Product(x0, y0);
+            high.fork();
+            low.fork();
+            BigInteger middle = new Product(x1.add(x0), y1.add(y0)).compute();
+            BigInteger z2 = high.join();
+            BigInteger z0 = low.join();
+            BigInteger result = z2.shiftLeft(2 * half).add(middle.subtract(z2).subtract(z0).shiftLeft(half)).add(z0);
+            return x.signum() * y.signum() < 0 ? result.negate() : result;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package calculator;
+
+class BinaryOperator extends Operator {
+    final Operation operation;
+
+    BinaryOperator(Type type, int priority, Operation operation, char symbol) {
+        super(type, priority, symbol);
+        this.operation = operation;
+    }
+}
@@ -0,0 +1,23 @@
+package calculator;
+
+import java.math.BigInteger;
+
+// The values of the variables a program reads, indexed like Program.slots; bigs[i] is null when
+// the value is values[i].
+final class Bindings {
+
+    long[] values;
+    BigInteger[] bigs;
+
+    Bindings(int size) {
+        values = new long[size];
+        bigs = new BigInteger[size];
+    }
+
+    void ensureCapacity(int size) {
+        if (values.length < size) {
+            values = new long[size];
+            bigs = new BigInteger[size];
+        }
+    }
+}
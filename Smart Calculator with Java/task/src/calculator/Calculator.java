@@ -0,0 +1,100 @@
+package calculator;
+
+import java.util.List;
+
+public final class Calculator {
+
+    static final int CACHE_SIZE = Integer.getInteger("calculator.cache.size", 1024);
+
+    private final ExpressionCache cache;
+    private final SymbolTable symbols = new SymbolTable();
+    private final SubexpressionTable subexpressions = new SubexpressionTable();
+    private final int scale;
+
+    public Calculator() {
+        this(CACHE_SIZE);
+    }
+
+    public Calculator(int cacheSize) {
+        this(cacheSize, 0);
+    }
+
+    // With a scale above 0 the calculator works on fixed-point decimals with scale places, and the
+    // values it returns and stores are BigIntegers holding value * 10^scale, see FixedPoint.
+    public Calculator(int cacheSize, int scale) {
+        if (scale < 0 || scale > FixedPoint.MAX_SCALE) {
+            throw new IllegalArgumentException("Scale must be between 0 and " + FixedPoint.MAX_SCALE);
+        }
+        this.cache = new ExpressionCache(cacheSize);
+        this.scale = scale;
+    }
+
+    public CompiledExpression compile(CharSequence expression) throws CalculatorException {
+        CompiledExpression compiled = prepare(expression);
+        if (!compiled.isValid()) {
+            throw new CalculatorException(compiled.error(), compiled.offset());
+        }
+        return compiled;
+    }
+
+    // Like compile, but an expression that does not parse comes back invalid rather than thrown,
+    // with the error offset in the stripped expression. Invalid expressions are not cached.
+    CompiledExpression prepare(CharSequence expression) {
+        String key = Lexer.strip(expression);
+        CompiledExpression compiled = cache.get(key);
+        if (compiled == null) {
+            long start = Metrics.ENABLED ? System.nanoTime() : 0;
+            Parser parser = new Parser(expression, scale);
+            if (!parser.parseInput()) {
+                return CompiledExpression.invalid(key, ErrorCode.INVALID_EXPRESSION,
+                        Lexer.strippedOffset(expression, parser.errorOffset()));
+            }
+            compiled = Metrics.ENABLED ? measuredCompile(key, parser.infix(), start) : assemble(key, parser.infix());
+            // a program that reads names nobody assigned yet would look them up on every run
+            if (compiled.isValid() && compiled.program().isResolved()) {
+                cache.put(key, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    private CompiledExpression assemble(String key, List<Element> infix) {
+        try {
+            return new CompiledExpression(key, Optimizer.optimize(Parser.convertToPostfix(infix), scale),
+                    symbols, subexpressions, scale);
+        } catch (CalculatorException e) {
+            // not expected once parseInput accepted the input
+            return CompiledExpression.invalid(key, e.code(), e.offset());
+        }
+    }
+
+    private CompiledExpression measuredCompile(String key, List<Element> infix, long start) {
+        long parsed = System.nanoTime();
+        try {
+            List<Element> postfix = Parser.convertToPostfix(infix);
+            long converted = System.nanoTime();
+            List<Element> optimized = Optimizer.optimize(postfix, scale);
+            long done = System.nanoTime();
+            CompiledExpression compiled = new CompiledExpression(key, optimized, symbols, subexpressions, scale);
+            Metrics.PARSE.record(parsed - start);
+            Metrics.POSTFIX.record(converted - parsed);
+            Metrics.OPTIMIZE.record(done - converted);
+            Metrics.ASSEMBLE.record(System.nanoTime() - done);
+            return compiled;
+        } catch (CalculatorException e) {
+            return CompiledExpression.invalid(key, e.code(), e.offset());
+        }
+    }
+
+    public Session newSession() {
+        return new Session(this, new Environment(symbols));
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    public String cacheStats() {
+        return cache.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package calculator;
+
+// Thrown by the throwing entry points (Session.execute, Calculator.compile, ...) for a line they
+// reject; Session.run reports the same errors as a Result instead. User errors need no stack trace,
+// and capturing one cost more than evaluating the line.
+public class CalculatorException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ErrorCode code;
+    private final int offset;
+
+    public CalculatorException(ErrorCode code) {
+        this(code, -1);
+    }
+
+    public CalculatorException(ErrorCode code, int offset) {
+        super(code.message(), null, false, false);
+        this.code = code;
+        this.offset = offset;
+    }
+
+    public ErrorCode code() {
+        return code;
+    }
+
+    // The offset in the input of the token at fault, or -1.
+    public int offset() {
+        return offset;
+    }
+}
@@ -0,0 +1,260 @@
+package calculator;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+
+// Runs a program over columns of variable values, BLOCK rows at a time: every instruction is one
+// loop over the block, and the loops for +, - and unary - are branch-free so C2 can vectorize them.
+// Rows that overflow or divide by zero are marked as the loops go and then run again one by one on
+// the Machine, which falls back to BigInteger; so is every row when some operand is a BigInteger.
+// A row that still fails gets its error code, and the other rows are unaffected.
+final class ColumnEvaluator {
+
+    private static final int BLOCK = 1024;
+
+    private final Program program;
+    private final Machine machine;
+    // the column of each argument, or null when the argument is the same in every row
+    private final long[][] inputs;
+    private final Bindings arguments;
+    private final long[][] stack;
+    private final long[][] temps;
+    // sign bit set for the rows of the current block that must be run again on the Machine
+    private final long[] invalid;
+    private final long[] results;
+    private BigInteger[] bigResults;
+    private ErrorCode[] errors;
+    // false when some operand is always a BigInteger, so only the row by row path applies
+    private final boolean exact;
+
+    private ColumnEvaluator(Program program, Environment environment, Map<String, long[]> columns, int rows)
+            throws CalculatorException {
+        this.program = program;
+        this.machine = environment.machine();
+        inputs = new long[program.names.length][];
+        arguments = new Bindings(program.names.length);
+        boolean exact = program.bigConstants.length == 0;
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = columns.get(program.names[i]);
+            if (inputs[i] == null) {
+                if (!environment.load(program.slot(i, environment.symbols()), arguments, i)) {
+                    throw new CalculatorException(ErrorCode.UNKNOWN_VARIABLE);
+                }
+                exact &= arguments.bigs[i] == null;
+            }
+        }
+        this.exact = exact;
+        stack = new long[program.maxStack][Math.min(BLOCK, rows)];
+        temps = new long[program.temps][Math.min(BLOCK, rows)];
+        invalid = new long[Math.min(BLOCK, rows)];
+        results = new long[rows];
+    }
+
+    // Evaluates program once per row; a variable without a column takes its value in environment.
+    static ResultColumn evaluate(Program program, Environment environment, Map<String, long[]> columns)
+            throws CalculatorException {
+        int rows = -1;
+        for (long[] column : columns.values()) {
+            if (rows >= 0 && column.length != rows) {
+                throw new IllegalArgumentException("Columns differ in length");
+            }
+            rows = column.length;
+        }
+        ColumnEvaluator evaluator = new ColumnEvaluator(program, environment, columns, Math.max(rows, 0));
+        evaluator.run();
+        return new ResultColumn(evaluator.results, evaluator.bigResults, evaluator.errors);
+    }
+
+    private void run() {
+        for (int start = 0; start < results.length; start += BLOCK) {
+            int count = Math.min(BLOCK, results.length - start);
+            if (exact) {
+                runBlock(start, count);
+            }
+            for (int i = 0; i < count; i++) {
+                if (!exact || invalid[i] < 0) {
+                    runRow(start + i);
+                } else {
+                    results[start + i] = stack[0][i];
+                }
+            }
+        }
+    }
+
+    private void runBlock(int start, int count) {
+        Arrays.fill(invalid, 0, count, 0);
+        int[] code = program.code;
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case Program.PUSH -> Arrays.fill(stack[++top], 0, count, program.constants[code[++pc]]);
+                case Program.LOAD -> {
+                    int argument = code[++pc];
+                    top++;
+                    if (inputs[argument] != null) {
+                        System.arraycopy(inputs[argument], start, stack[top], 0, count);
+                    } else {
+                        Arrays.fill(stack[top], 0, count, arguments.values[argument]);
+                    }
+                }
+                case Program.SAVE -> System.arraycopy(stack[top], 0, temps[code[++pc]], 0, count);
+                case Program.RESTORE -> System.arraycopy(temps[code[++pc]], 0, stack[++top], 0, count);
+                // lines of a batch memoize, columns do not
+                case Program.MEMO -> pc += 2;
+                case Program.REMEMBER -> pc++;
+                case Program.NEGATE -> negate(stack[top], invalid, count);
+                case Program.ADD -> add(stack[--top], stack[top + 1], invalid, count);
+                case Program.SUBTRACT -> subtract(stack[--top], stack[top + 1], invalid, count);
+                case Program.MULTIPLY -> multiply(stack[--top], stack[top + 1], invalid, count);
+                case Program.DIVIDE -> divide(stack[--top], stack[top + 1], invalid, count);
+                case Program.REMAINDER -> remainder(stack[--top], stack[top + 1], invalid, count);
+                case Program.POWER -> power(stack[--top], stack[top + 1], invalid, count);
+                case Program.POWER_MOD, Program.MULTIPLY_SCALED, Program.DIVIDE_SCALED, Program.POWER_SCALED -> {
+                    top -= 2;
+                    ternary(code[pc], stack[top], stack[top + 1], stack[top + 2], invalid, count);
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + code[pc]);
+            }
+        }
+    }
+
+    private void runRow(int row) {
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i] != null) {
+                arguments.values[i] = inputs[i][row];
+                arguments.bigs[i] = null;
+            }
+        }
+        try {
+            machine.execute(program, arguments);
+        } catch (CalculatorException e) {
+            fail(row, e.code());
+            return;
+        } catch (ArithmeticException e) {
+            fail(row, ErrorCode.DIVISION_BY_ZERO);
+            return;
+        }
+        if (machine.fitsLong()) {
+            results[row] = machine.longResult();
+        } else {
+            if (bigResults == null) {
+                bigResults = new BigInteger[results.length];
+            }
+            bigResults[row] = machine.bigResult();
+        }
+    }
+
+    private void fail(int row, ErrorCode error) {
+        if (errors == null) {
+            errors = new ErrorCode[results.length];
+        }
+        errors[row] = error;
+    }
+
+    // Each loop leaves the sign bit of invalid[i] set when row i overflowed or needs BigInteger
+    // semantics; later loops carry on with whatever value such a row holds.
+    private static void negate(long[] x, long[] invalid, int count) {
+        for (int i = 0; i < count; i++) {
+            long result = -x[i];
+            invalid[i] |= x[i] & result;
+            x[i] = result;
+        }
+    }
+
+    private static void add(long[] x, long[] y, long[] invalid, int count) {
+        for (int i = 0; i < count; i++) {
+            long result = x[i] + y[i];
+            invalid[i] |= (x[i] ^ result) & (y[i] ^ result);
+            x[i] = result;
+        }
+    }
+
+    private static void subtract(long[] x, long[] y, long[] invalid, int count) {
+        for (int i = 0; i < count; i++) {
+            long result = x[i] - y[i];
+            invalid[i] |= (x[i] ^ y[i]) & (x[i] ^ result);
+            x[i] = result;
+        }
+    }
+
+    private static void multiply(long[] x, long[] y, long[] invalid, int count) {
+        for (int i = 0; i < count; i++) {
+            long result = x[i] * y[i];
+            long high = Math.multiplyHigh(x[i], y[i]) ^ result >> 63;
+            invalid[i] |= high | -high;
+            x[i] = result;
+        }
+    }
+
+    private static void divide(long[] x, long[] y, long[] invalid, int count) {
+        for (int i = 0; i < count; i++) {
+            if (y[i] == 0 || y[i] == -1 && x[i] == Long.MIN_VALUE) {
+                invalid[i] = -1;
+            } else {
+                x[i] /= y[i];
+            }
+        }
+    }
+
+    private static void remainder(long[] x, long[] y, long[] invalid, int count) {
+        for (int i = 0; i < count; i++) {
+            if (y[i] == 0) {
+                invalid[i] = -1;
+            } else {
+                x[i] %= y[i];
+            }
+        }
+    }
+
+    private static void power(long[] x, long[] y, long[] invalid, int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                x[i] = LongMath.power(x[i], y[i]);
+            } catch (ArithmeticException e) {
+                invalid[i] = -1;
+            }
+        }
+    }
+
+    private static void ternary(int opcode, long[] x, long[] y, long[] z, long[] invalid, int count) {
+        switch (opcode) {
+            case Program.POWER_MOD -> {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        x[i] = LongMath.powerMod(x[i], y[i], z[i]);
+                    } catch (ArithmeticException e) {
+                        invalid[i] = -1;
+                    }
+                }
+            }
+            case Program.MULTIPLY_SCALED -> {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        x[i] = LongMath.multiplyScaled(x[i], y[i], z[i]);
+                    } catch (ArithmeticException e) {
+                        invalid[i] = -1;
+                    }
+                }
+            }
+            case Program.DIVIDE_SCALED -> {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        x[i] = LongMath.divideScaled(x[i], y[i], z[i]);
+                    } catch (ArithmeticException e) {
+                        invalid[i] = -1;
+                    }
+                }
+            }
+            default -> {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        x[i] = LongMath.powerScaled(x[i], y[i], z[i]);
+                    } catch (ArithmeticException e) {
+                        invalid[i] = -1;
+                    }
+                }
+            }
+        }
+    }
+}
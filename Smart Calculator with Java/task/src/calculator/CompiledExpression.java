@@ -0,0 +1,131 @@
+package calculator;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+public final class CompiledExpression {
+
+    private final String expression;
+    // null when the expression did not parse, and error and offset say why
+    private final Program program;
+    // the table program's slots refer to; environments of other calculators number them differently
+    private final SymbolTable symbols;
+    private final ErrorCode error;
+    private final int offset;
+
+    CompiledExpression(String expression, List<Element> postfix, SymbolTable symbols) throws CalculatorException {
+        this(expression, postfix, symbols, null, 0);
+    }
+
+    CompiledExpression(String expression, List<Element> postfix, SymbolTable symbols,
+                       SubexpressionTable subexpressions, int scale) throws CalculatorException {
+        this.expression = expression;
+        this.program = Program.assemble(postfix, symbols, subexpressions, scale);
+        this.symbols = symbols;
+        this.error = null;
+        this.offset = -1;
+    }
+
+    private CompiledExpression(String expression, ErrorCode error, int offset) {
+        this.expression = expression;
+        this.program = null;
+        this.symbols = null;
+        this.error = error;
+        this.offset = offset;
+    }
+
+    // An expression that failed to compile with error at offset in the stripped expression.
+    static CompiledExpression invalid(String expression, ErrorCode error, int offset) {
+        return new CompiledExpression(expression, error, offset);
+    }
+
+    boolean isValid() {
+        return program != null;
+    }
+
+    ErrorCode error() {
+        return error;
+    }
+
+    int offset() {
+        return offset;
+    }
+
+    // Evaluates the expression without throwing for errors in it, which Result reports with their
+    // offset in expression(). Arithmetic errors, a division by zero or a result that is too large,
+    // have no offset.
+    public Result run(Environment environment) {
+        if (program == null) {
+            return Result.error(error, offset);
+        }
+        check(environment);
+        Machine machine = environment.machine();
+        try {
+            int missing = machine.run(program, environment);
+            if (missing >= 0) {
+                return Result.error(ErrorCode.UNKNOWN_VARIABLE, Lexer.find(expression, program.names[missing]));
+            }
+            return Result.of(Operation.printable(machine.bigResult()));
+        } catch (CalculatorException e) {
+            return Result.error(e.code(), e.offset());
+        } catch (ArithmeticException e) {
+            return Result.error(ErrorCode.DIVISION_BY_ZERO, -1);
+        }
+    }
+
+    public BigInteger evaluate(Environment environment) throws CalculatorException {
+        Machine machine = environment.machine();
+        run(machine, environment);
+        return machine.bigResult();
+    }
+
+    public long evaluateLongExact(Environment environment) throws CalculatorException {
+        Machine machine = environment.machine();
+        run(machine, environment);
+        if (!machine.fitsLong()) {
+            throw new ArithmeticException("long overflow");
+        }
+        return machine.longResult();
+    }
+
+    private void run(Machine machine, Environment environment) throws CalculatorException {
+        if (program == null) {
+            throw new CalculatorException(error, offset);
+        }
+        check(environment);
+        int missing = machine.run(program, environment);
+        if (missing >= 0) {
+            throw new CalculatorException(ErrorCode.UNKNOWN_VARIABLE, Lexer.find(expression, program.names[missing]));
+        }
+    }
+
+    // Evaluates the expression once per row of columns, which map variable names to their value in
+    // every row; variables without a column take their value in environment.
+    public ResultColumn evaluate(Environment environment, Map<String, long[]> columns) throws CalculatorException {
+        if (program == null) {
+            throw new CalculatorException(error, offset);
+        }
+        check(environment);
+        return ColumnEvaluator.evaluate(program, environment, columns);
+    }
+
+    private void check(Environment environment) {
+        if (environment.symbols() != symbols) {
+            throw new IllegalArgumentException("The environment belongs to another calculator");
+        }
+    }
+
+    Program program() {
+        return program;
+    }
+
+    public String expression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return program == null ? error.message() : program.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package calculator;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+// Decimal conversion of huge numbers by divide and conquer around the powers 10^(LEAF_DIGITS * 2^k):
+// parsing joins the two halves of the digits as high * 10^k + low, printing splits the value with
+// divideAndRemainder, so both cost a few multiplications of the full size instead of
+// BigInteger(String)'s quadratic digit-by-digit loop. Printing writes the digits in order, one leaf
+// at a time, so a result can go to its output without ever being a String.
+final class Decimal {
+
+    private static final int LEAF_DIGITS = 512;
+    // below this, BigInteger's own conversions are faster
+    private static final int THRESHOLD_DIGITS = 4 * LEAF_DIGITS;
+    private static final int THRESHOLD_BITS = (int) (THRESHOLD_DIGITS * 3.3219280948873626);
+    private static final String ZEROS = "0".repeat(LEAF_DIGITS);
+
+    // powers[k] = 10^(LEAF_DIGITS * 2^k), computed when first needed
+    private static volatile BigInteger[] powers = {BigInteger.TEN.pow(LEAF_DIGITS)};
+
+    private Decimal() {
+    }
+
+    // digits holds decimal digits only, without a sign.
+    static BigInteger parse(CharSequence digits) {
+        return parse(digits, 0, digits.length());
+    }
+
+    private static BigInteger parse(CharSequence digits, int from, int to) {
+        int length = to - from;
+        if (length <= THRESHOLD_DIGITS) {
+            return new BigInteger(digits.subSequence(from, to).toString());
+        }
+        int level = 0;
+        while ((long) LEAF_DIGITS << level + 1 < length) {
+            level++;
+        }
+        int split = to - (LEAF_DIGITS << level);
+        BigInteger high = parse(digits, from, split);
+        BigInteger low = parse(digits, split, to);
+        return BigMath.multiply(high, power(level)).add(low);
+    }
+
+    static String toString(BigInteger value) {
+        if (value.bitLength() < THRESHOLD_BITS) {
+            return value.toString();
+        }
+        StringBuilder builder = new StringBuilder((int) (value.bitLength() * 0.30103) + 2);
+        try {
+            write(value, builder);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return builder.toString();
+    }
+
+    static void write(BigInteger value, Appendable out) throws IOException {
+        if (value.bitLength() < THRESHOLD_BITS) {
+            out.append(value.toString());
+            return;
+        }
+        if (value.signum() < 0) {
+            out.append('-');
+            value = value.negate();
+        }
+        int level = 0;
+        while (power(level + 1).compareTo(value) <= 0) {
+            level++;
+        }
+        write(value, level, 0, out);
+    }
+
+    // Writes value < 10^(2 * LEAF_DIGITS * 2^level) with exactly padding digits, or with no leading
+    // zeros when padding is 0.
+    private static void write(BigInteger value, int level, int padding, Appendable out) throws IOException {
+        if (level < 0) {
+            String digits = value.toString();
+            if (padding > digits.length()) {
+                out.append(ZEROS, 0, padding - digits.length());
+            }
+            out.append(digits);
+            return;
+        }
+        BigInteger[] parts = value.divideAndRemainder(power(level));
+        int digits = LEAF_DIGITS << level;
+        if (padding == 0 && parts[0].signum() == 0) {
+            write(parts[1], level - 1, 0, out);
+        } else {
+            write(parts[0], level - 1, padding == 0 ? 0 : padding - digits, out);
+            write(parts[1], level - 1, digits, out);
+        }
+    }
+
+    private static BigInteger power(int level) {
+        BigInteger[] powers = Decimal.powers;
+        if (level >= powers.length) {
+            synchronized (Decimal.class) {
+                powers = Decimal.powers;
+                if (level >= powers.length) {
+                    int known = powers.length;
+                    powers = Arrays.copyOf(powers, level + 1);
+                    for (int i = known; i <= level; i++) {
+                        powers[i] = BigMath.multiply(powers[i - 1], powers[i - 1]);
+                    }
+                    Decimal.powers = powers;
+                }
+            }
+        }
+        return powers[level];
+    }
+}
@@ -0,0 +1,173 @@
+package calculator;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+class DependencyGraph {
+
+    private static class Formula {
+        final String name;
+        final CompiledExpression expression;
+        final String[] dependencies;
+        // strictly greater than the height of every formula it reads, so height order is a topological order
+        int height;
+        boolean queued;
+
+        Formula(String name, CompiledExpression expression) {
+            this.name = name;
+            this.expression = expression;
+            this.dependencies = expression.program().names;
+        }
+    }
+
+    private final Map<String, Formula> formulas = new HashMap<>();
+    private final Map<String, List<Formula>> dependents = new HashMap<>();
+
+    boolean isFormula(String name) {
+        return formulas.containsKey(name);
+    }
+
+    int size() {
+        return formulas.size();
+    }
+
+    Map<String, CompiledExpression> expressions() {
+        Map<String, CompiledExpression> expressions = new LinkedHashMap<>();
+        for (Formula formula : formulas.values()) {
+            expressions.put(formula.name, formula.expression);
+        }
+        return expressions;
+    }
+
+    void clear() {
+        formulas.clear();
+        dependents.clear();
+    }
+
+    void define(Environment environment, String name, CompiledExpression expression) throws CalculatorException {
+        Formula formula = new Formula(name, expression);
+        if (reaches(name, formula.dependencies)) {
+            throw new CalculatorException(ErrorCode.CIRCULAR_DEPENDENCY);
+        }
+        BigInteger value = expression.evaluate(environment);
+
+        remove(name);
+        formulas.put(name, formula);
+        for (String dependency : formula.dependencies) {
+            dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(formula);
+            Formula parent = formulas.get(dependency);
+            formula.height = Math.max(formula.height, parent == null ? 1 : parent.height + 1);
+        }
+        raiseHeights(formula);
+        environment.put(name, value);
+        changed(environment, name);
+    }
+
+    void remove(String name) {
+        Formula formula = formulas.remove(name);
+        if (formula != null) {
+            for (String dependency : formula.dependencies) {
+                dependents.get(dependency).remove(formula);
+            }
+        }
+    }
+
+    // Recomputes the formulas downstream of name in height order; a formula whose value did not
+    // change does not dirty its own dependents. A formula that fails, a division by zero included,
+    // has no value until its inputs change again.
+    void changed(Environment environment, String name) {
+        if (formulas.isEmpty()) {
+            return;
+        }
+        List<Formula> direct = dependents.get(name);
+        if (direct == null || direct.isEmpty()) {
+            return;
+        }
+        PriorityQueue<Formula> queue = new PriorityQueue<>(Comparator.comparingInt(formula -> formula.height));
+        enqueue(queue, direct);
+        try {
+            while (!queue.isEmpty()) {
+                Formula formula = queue.poll();
+                formula.queued = false;
+                BigInteger value;
+                try {
+                    value = formula.expression.evaluate(environment);
+                } catch (CalculatorException | ArithmeticException e) {
+                    value = null;
+                }
+                if (!Objects.equals(value, environment.get(formula.name))) {
+                    environment.put(formula.name, value);
+                    List<Formula> next = dependents.get(formula.name);
+                    if (next != null) {
+                        enqueue(queue, next);
+                    }
+                }
+            }
+        } finally {
+            // a formula left queued would never be enqueued again
+            for (Formula formula : queue) {
+                formula.queued = false;
+            }
+        }
+    }
+
+    private static void enqueue(PriorityQueue<Formula> queue, List<Formula> formulas) {
+        for (Formula formula : formulas) {
+            if (!formula.queued) {
+                formula.queued = true;
+                queue.add(formula);
+            }
+        }
+    }
+
+    private boolean reaches(String name, String[] targets) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(name);
+        while (!stack.isEmpty()) {
+            String current = stack.pop();
+            for (String target : targets) {
+                if (target.equals(current)) {
+                    return true;
+                }
+            }
+            List<Formula> next = dependents.get(current);
+            if (next != null) {
+                for (Formula formula : next) {
+                    if (visited.add(formula.name)) {
+                        stack.push(formula.name);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void raiseHeights(Formula formula) {
+        Deque<Formula> stack = new ArrayDeque<>();
+        stack.push(formula);
+        while (!stack.isEmpty()) {
+            Formula parent = stack.pop();
+            List<Formula> next = dependents.get(parent.name);
+            if (next != null) {
+                for (Formula child : next) {
+                    if (child.height <= parent.height) {
+                        child.height = parent.height + 1;
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package calculator;
+
+class Element {
+    final Type type;
+
+    Element(Type type) {
+        this.type = type;
+    }
+}
@@ -0,0 +1,201 @@
+package calculator;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+
+public final class Environment {
+
+    // marks a slot whose value is held in values; null marks an undefined variable
+    private static final BigInteger SMALL = new BigInteger(new byte[]{0});
+    // Slots are numbered across all the sessions of a calculator, so the storage of a session comes
+    // in pages that are only allocated once one of their slots is assigned.
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final SymbolTable symbols;
+    private long[][] values = new long[1][];
+    private BigInteger[][] bigs = new BigInteger[1][];
+    private int size;
+    // stamps[slot] is the version at which the slot was last assigned
+    private long[][] stamps = new long[1][];
+    private long version;
+    private final Machine machine = new Machine();
+    private final DependencyGraph formulas = new DependencyGraph();
+    private WriteAheadLog log;
+
+    Environment(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public BigInteger get(String variable) {
+        int slot = symbols.lookup(variable);
+        return slot < 0 ? null : get(slot);
+    }
+
+    public void set(String variable, BigInteger value) {
+        formulas.remove(variable);
+        put(symbols.intern(variable), value);
+        // logged first, so the assignment is durable even if recomputing a formula fails
+        if (log != null) {
+            log.set(variable, value);
+        }
+        formulas.changed(this, variable);
+    }
+
+    public void define(String variable, CompiledExpression formula) throws CalculatorException {
+        formulas.define(this, variable, formula);
+        if (log != null) {
+            log.define(variable, formula.expression());
+        }
+    }
+
+    public boolean isFormula(String variable) {
+        return formulas.isFormula(variable);
+    }
+
+    public boolean contains(String variable) {
+        return get(variable) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    BigInteger get(int slot) {
+        int page = slot >>> PAGE_BITS;
+        if (page >= bigs.length || bigs[page] == null) {
+            return null;
+        }
+        BigInteger value = bigs[page][slot & PAGE_MASK];
+        return value == SMALL ? BigInteger.valueOf(values[page][slot & PAGE_MASK]) : value;
+    }
+
+    void put(String variable, BigInteger value) {
+        put(symbols.intern(variable), value);
+    }
+
+    void put(int slot, BigInteger value) {
+        int page = page(slot);
+        int index = slot & PAGE_MASK;
+        stamps[page][index] = ++version;
+        if (bigs[page][index] == null) {
+            size += value == null ? 0 : 1;
+        } else if (value == null) {
+            size--;
+        }
+        if (value == null || !Operation.fitsLong(value)) {
+            bigs[page][index] = value;
+        } else {
+            values[page][index] = value.longValue();
+            bigs[page][index] = SMALL;
+        }
+    }
+
+    void put(int slot, long value) {
+        int page = page(slot);
+        int index = slot & PAGE_MASK;
+        stamps[page][index] = ++version;
+        if (bigs[page][index] == null) {
+            size++;
+        }
+        values[page][index] = value;
+        bigs[page][index] = SMALL;
+    }
+
+    // Makes room for slots below slots in the page directory; the pages come with their first value.
+    void reserve(int slots) {
+        int pages = (slots + PAGE_MASK) >>> PAGE_BITS;
+        if (pages > bigs.length) {
+            int capacity = Math.max(bigs.length * 2, pages);
+            values = Arrays.copyOf(values, capacity);
+            bigs = Arrays.copyOf(bigs, capacity);
+            stamps = Arrays.copyOf(stamps, capacity);
+        }
+    }
+
+    // The page of slot, allocated if needed.
+    private int page(int slot) {
+        int page = slot >>> PAGE_BITS;
+        reserve(slot + 1);
+        if (bigs[page] == null) {
+            values[page] = new long[PAGE_SIZE];
+            bigs[page] = new BigInteger[PAGE_SIZE];
+            stamps[page] = new long[PAGE_SIZE];
+        }
+        return page;
+    }
+
+    // Forgets every variable and formula; interned names keep their slots.
+    void clear() {
+        Arrays.fill(values, null);
+        Arrays.fill(bigs, null);
+        Arrays.fill(stamps, null);
+        ++version;
+        size = 0;
+        formulas.clear();
+    }
+
+    void journal(WriteAheadLog log) {
+        this.log = log;
+    }
+
+    // Called once a snapshot replaced the whole state, which the log cannot express record by record.
+    void restored() throws IOException {
+        if (log != null) {
+            log.checkpoint(this);
+        }
+    }
+
+    // An upper bound for the slots that hold a value.
+    int slots() {
+        return (int) Math.min((long) bigs.length << PAGE_BITS, symbols.size());
+    }
+
+    Map<String, CompiledExpression> formulas() {
+        return formulas.expressions();
+    }
+
+    // Copies the variable in slot into bindings at index, or returns false when it is undefined.
+    boolean load(int slot, Bindings bindings, int index) {
+        int page = slot >>> PAGE_BITS;
+        if (page >= bigs.length || bigs[page] == null) {
+            return false;
+        }
+        BigInteger value = bigs[page][slot & PAGE_MASK];
+        if (value == null) {
+            return false;
+        } else if (value == SMALL) {
+            bindings.values[index] = values[page][slot & PAGE_MASK];
+            bindings.bigs[index] = null;
+        } else {
+            bindings.bigs[index] = value;
+        }
+        return true;
+    }
+
+    long version() {
+        return version;
+    }
+
+    // Whether none of slots has been assigned after version.
+    boolean unchangedSince(int[] slots, long version) {
+        for (int slot : slots) {
+            long[] page = slot >>> PAGE_BITS < stamps.length ? stamps[slot >>> PAGE_BITS] : null;
+            if (page != null && page[slot & PAGE_MASK] > version) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    SymbolTable symbols() {
+        return symbols;
+    }
+
+    Machine machine() {
+        return machine;
+    }
+}
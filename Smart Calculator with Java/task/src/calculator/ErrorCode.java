@@ -0,0 +1,27 @@
+package calculator;
+
+public enum ErrorCode {
+    INVALID_EXPRESSION("Invalid expression"),
+    INVALID_ASSIGNMENT("Invalid assignment"),
+    INVALID_IDENTIFIER("Invalid identifier"),
+    UNKNOWN_VARIABLE("Unknown variable"),
+    CIRCULAR_DEPENDENCY("Circular dependency"),
+    RESULT_TOO_LARGE("Result is too large"),
+    INVALID_EXPONENT("Invalid exponent"),
+    INVALID_SNAPSHOT("Invalid snapshot"),
+    INVALID_LOG("Invalid log"),
+    SCALE_MISMATCH("Saved with a different scale"),
+    // reported by Session.run, calc -e and the server; the REPL and --batch still end on it
+    DIVISION_BY_ZERO("Division by zero");
+
+    private final String message;
+
+    ErrorCode(String message) {
+        this.message = message;
+    }
+
+    // The text the REPL prints for this error.
+    public String message() {
+        return message;
+    }
+}
@@ -0,0 +1,63 @@
+package calculator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class ExpressionCache {
+    private final int maxSize;
+    private final Map<String, CompiledExpression> programs;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ExpressionCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.programs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                if (size() > ExpressionCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    synchronized CompiledExpression get(String expression) {
+        CompiledExpression program = programs.get(expression);
+        if (program == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return program;
+    }
+
+    synchronized void put(String expression, CompiledExpression program) {
+        if (maxSize > 0) {
+            programs.put(expression, program);
+        }
+    }
+
+    synchronized int size() {
+        return programs.size();
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "size=" + size() + "/" + maxSize + " hits=" + hits + " misses=" + misses + " evictions=" + evictions;
+    }
+}
@@ -0,0 +1,166 @@
+package calculator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+final class ExpressionCompiler {
+
+    private static final int MAX_LENGTH = 512;
+    // each temporary is one more long parameter of every handle in the tree
+    private static final int MAX_TEMPS = 32;
+    private static final MethodHandle LOAD;
+    private static final MethodHandle ADD;
+    private static final MethodHandle SUBTRACT;
+    private static final MethodHandle MULTIPLY;
+    private static final MethodHandle DIVIDE;
+    private static final MethodHandle REMAINDER;
+    private static final MethodHandle POWER;
+    private static final MethodHandle POWER_MOD;
+    private static final MethodHandle MULTIPLY_SCALED;
+    private static final MethodHandle DIVIDE_SCALED;
+    private static final MethodHandle POWER_SCALED;
+    private static final MethodHandle NEGATE;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType binary = MethodType.methodType(long.class, long.class, long.class);
+        try {
+            LOAD = lookup.findStatic(ExpressionCompiler.class, "load",
+                    MethodType.methodType(long.class, Bindings.class, int.class));
+            ADD = lookup.findStatic(LongMath.class, "add", binary);
+            SUBTRACT = lookup.findStatic(LongMath.class, "subtract", binary);
+            MULTIPLY = lookup.findStatic(LongMath.class, "multiply", binary);
+            DIVIDE = lookup.findStatic(LongMath.class, "divide", binary);
+            REMAINDER = lookup.findStatic(LongMath.class, "remainder", binary);
+            POWER = lookup.findStatic(LongMath.class, "power", binary);
+            MethodType ternary = MethodType.methodType(long.class, long.class, long.class, long.class);
+            POWER_MOD = lookup.findStatic(LongMath.class, "powerMod", ternary);
+            MULTIPLY_SCALED = lookup.findStatic(LongMath.class, "multiplyScaled", ternary);
+            DIVIDE_SCALED = lookup.findStatic(LongMath.class, "divideScaled", ternary);
+            POWER_SCALED = lookup.findStatic(LongMath.class, "powerScaled", ternary);
+            NEGATE = lookup.findStatic(LongMath.class, "negate", MethodType.methodType(long.class, long.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private ExpressionCompiler() {
+    }
+
+    // Turns a program into a tree of method handles. Hot handles invoked through invokeExact are
+    // customized by the JVM, which lets the JIT inline the whole tree into the caller.
+    // While the tree is built every handle takes the temporaries as extra long parameters after the
+    // Bindings; RESTORE k reads parameter k, and at the end each temporary is bound, last to first,
+    // to the handle SAVE k stored, so a shared subexpression is still evaluated once.
+    static LongExpression compile(Program program) {
+        if (program.code.length > MAX_LENGTH || program.bigConstants.length > 0 || program.temps > MAX_TEMPS) {
+            return null;
+        }
+        int temps = program.temps;
+        List<Class<?>> tempTypes = Collections.nCopies(temps, long.class);
+        MethodType type = MethodType.methodType(long.class, Bindings.class).appendParameterTypes(tempTypes);
+        int[] code = program.code;
+        MethodHandle[] stack = new MethodHandle[program.maxStack];
+        MethodHandle[] saved = new MethodHandle[temps];
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case Program.PUSH -> stack[++top] = MethodHandles.dropArguments(
+                        MethodHandles.constant(long.class, program.constants[code[++pc]]), 0, type.parameterList());
+                case Program.LOAD -> stack[++top] = MethodHandles.dropArguments(
+                        MethodHandles.insertArguments(LOAD, 1, code[++pc]), 1, tempTypes);
+                case Program.SAVE -> {
+                    int temp = code[++pc];
+                    if (saved[temp] == null) {
+                        saved[temp] = stack[top];
+                    }
+                }
+                case Program.RESTORE -> {
+                    int temp = code[++pc];
+                    stack[++top] = MethodHandles.dropArguments(MethodHandles.dropArguments(
+                            MethodHandles.identity(long.class), 0, type.parameterList().subList(0, temp + 1)),
+                            temp + 2, tempTypes.subList(temp + 1, temps));
+                }
+                // a compiled program always computes its memoized subtrees
+                case Program.MEMO -> pc += 2;
+                case Program.REMEMBER -> pc++;
+                case Program.NEGATE -> stack[top] = MethodHandles.filterReturnValue(stack[top], NEGATE);
+                case Program.ADD -> stack[top - 1] = combine(type, ADD, stack[top - 1], stack[top--]);
+                case Program.SUBTRACT -> stack[top - 1] = combine(type, SUBTRACT, stack[top - 1], stack[top--]);
+                case Program.MULTIPLY -> stack[top - 1] = combine(type, MULTIPLY, stack[top - 1], stack[top--]);
+                case Program.DIVIDE -> stack[top - 1] = combine(type, DIVIDE, stack[top - 1], stack[top--]);
+                case Program.REMAINDER -> stack[top - 1] = combine(type, REMAINDER, stack[top - 1], stack[top--]);
+                case Program.POWER -> stack[top - 1] = combine(type, POWER, stack[top - 1], stack[top--]);
+                case Program.POWER_MOD -> {
+                    top -= 2;
+                    stack[top] = combine(type, POWER_MOD, stack[top], stack[top + 1], stack[top + 2]);
+                }
+                case Program.MULTIPLY_SCALED -> {
+                    top -= 2;
+                    stack[top] = combine(type, MULTIPLY_SCALED, stack[top], stack[top + 1], stack[top + 2]);
+                }
+                case Program.DIVIDE_SCALED -> {
+                    top -= 2;
+                    stack[top] = combine(type, DIVIDE_SCALED, stack[top], stack[top + 1], stack[top + 2]);
+                }
+                case Program.POWER_SCALED -> {
+                    top -= 2;
+                    stack[top] = combine(type, POWER_SCALED, stack[top], stack[top + 1], stack[top + 2]);
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        MethodHandle handle = stack[0];
+        for (int temp = temps - 1; temp >= 0; temp--) {
+            // saved[temp] only reads the temporaries before it
+            Object[] unused = new Object[temps - temp];
+            Arrays.fill(unused, 0L);
+            MethodHandle value = MethodHandles.insertArguments(saved[temp], temp + 1, unused);
+            MethodType bound = type.dropParameterTypes(temp + 1, temps + 1);
+            handle = MethodHandles.permuteArguments(MethodHandles.collectArguments(handle, temp + 1, value),
+                    bound, repeat(bound, 2));
+        }
+        MethodHandle expression = handle;
+        return arguments -> {
+            try {
+                return (long) expression.invokeExact(arguments);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    // operation applied to the values of operands, which all have type.
+    private static MethodHandle combine(MethodType type, MethodHandle operation, MethodHandle... operands) {
+        MethodHandle handle = operation;
+        for (int i = operands.length - 1; i >= 0; i--) {
+            handle = MethodHandles.collectArguments(handle, i, operands[i]);
+        }
+        return MethodHandles.permuteArguments(handle, type, repeat(type, operands.length));
+    }
+
+    // The reorder that passes all the parameters of type to each of times handles.
+    private static int[] repeat(MethodType type, int times) {
+        int count = type.parameterCount();
+        int[] reorder = new int[count * times];
+        for (int i = 0; i < reorder.length; i++) {
+            reorder[i] = i % count;
+        }
+        return reorder;
+    }
+
+    private static long load(Bindings arguments, int index) {
+        if (arguments.bigs[index] != null) {
+            throw LongMath.OVERFLOW;
+        }
+        return arguments.values[index];
+    }
+}
@@ -0,0 +1,113 @@
+package calculator;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+// Fixed-point decimals for --scale: a value v is held as the integer v * 10^scale, so +, -, % and
+// unary - are the integer operations, while *, / and ^ rescale their exact result and round it
+// half away from zero. The long versions of the rescaling operations are in LongMath.
+final class FixedPoint {
+
+    static final int MAX_SCALE = 18;
+
+    private FixedPoint() {
+    }
+
+    // 10^scale, the representation of 1.
+    static BigInteger factor(int scale) {
+        return BigInteger.TEN.pow(scale);
+    }
+
+    static BigInteger multiply(BigInteger x, BigInteger y, BigInteger factor) throws CalculatorException {
+        return round(Operation.multiply(x, y).divideAndRemainder(factor), factor);
+    }
+
+    static BigInteger divide(BigInteger x, BigInteger y, BigInteger factor) {
+        return round(x.multiply(factor).divideAndRemainder(y), y);
+    }
+
+    // Only whole exponents: x^n is x^n / factor^(n - 1) on the integers, and x^-n is 1 / x^n.
+    static BigInteger power(BigInteger x, BigInteger y, BigInteger factor) throws CalculatorException {
+        BigInteger[] exponent = y.divideAndRemainder(factor);
+        if (exponent[1].signum() != 0) {
+            throw new CalculatorException(ErrorCode.INVALID_EXPONENT);
+        }
+        BigInteger n = exponent[0];
+        if (n.signum() == 0 || x.equals(factor)) {
+            return factor;
+        } else if (x.equals(factor.negate())) {
+            return n.testBit(0) ? x : factor;
+        } else if (n.signum() < 0) {
+            BigInteger divisor = Operation.power(x, n.negate());
+            return round(Operation.power(factor, BigInteger.ONE.subtract(n)).divideAndRemainder(divisor), divisor);
+        }
+        BigInteger divisor = Operation.power(factor, n.subtract(BigInteger.ONE));
+        return round(Operation.power(x, n).divideAndRemainder(divisor), divisor);
+    }
+
+    // A factor of 1 is plain integer arithmetic, which truncates.
+    static BigInteger apply(Operation operation, BigInteger x, BigInteger y, BigInteger factor)
+            throws CalculatorException {
+        if (factor.equals(BigInteger.ONE)) {
+            return operation.apply(x, y);
+        }
+        return switch (operation) {
+            case MULTIPLY -> multiply(x, y, factor);
+            case DIVIDE -> divide(x, y, factor);
+            case POWER -> power(x, y, factor);
+            default -> operation.apply(x, y);
+        };
+    }
+
+    // quotient + remainder / divisor, rounded half away from zero.
+    private static BigInteger round(BigInteger[] quotientAndRemainder, BigInteger divisor) {
+        BigInteger remainder = quotientAndRemainder[1];
+        if (remainder.abs().shiftLeft(1).compareTo(divisor.abs()) < 0) {
+            return quotientAndRemainder[0];
+        }
+        return remainder.signum() == divisor.signum() ? quotientAndRemainder[0].add(BigInteger.ONE)
+                : quotientAndRemainder[0].subtract(BigInteger.ONE);
+    }
+
+    // digits holds decimal digits and at most one '.'; the value is rounded to scale places.
+    static BigInteger parse(String digits, int scale) {
+        int point = digits.indexOf('.');
+        int places = point < 0 ? 0 : digits.length() - point - 1;
+        BigInteger value = Decimal.parse(point < 0 ? digits : digits.substring(0, point) + digits.substring(point + 1));
+        if (places <= scale) {
+            return value.multiply(factor(scale - places));
+        }
+        BigInteger divisor = factor(places - scale);
+        return round(value.divideAndRemainder(divisor), divisor);
+    }
+
+    static String toString(BigInteger value, int scale) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            write(value, scale, builder);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return builder.toString();
+    }
+
+    // Writes value / 10^scale with exactly scale places.
+    static void write(BigInteger value, int scale, Appendable out) throws IOException {
+        if (scale == 0) {
+            Decimal.write(value, out);
+            return;
+        }
+        if (value.signum() < 0) {
+            out.append('-');
+            value = value.negate();
+        }
+        BigInteger[] parts = value.divideAndRemainder(factor(scale));
+        Decimal.write(parts[0], out);
+        out.append('.');
+        String places = parts[1].toString();
+        for (int i = places.length(); i < scale; i++) {
+            out.append('0');
+        }
+        out.append(places);
+    }
+}
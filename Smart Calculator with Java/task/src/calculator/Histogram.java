@@ -0,0 +1,111 @@
+package calculator;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear latency histogram in the style of HdrHistogram: values below 32 get a bucket each,
+// larger ones share 16 buckets per power of two, so any recorded value is known within 1/16.
+final class Histogram implements StageMXBean {
+
+    private static final int LINEAR = 32;
+    private static final int PER_OCTAVE = 16;
+    private static final int BUCKETS = LINEAR + 59 * PER_OCTAVE;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    // Records a sample that stands for weight measurements, so counts and the mean stay estimates
+    // of every measurement when only one in weight is timed.
+    void record(long nanos, int weight) {
+        buckets.addAndGet(index(Math.max(0, nanos)), weight);
+        count.add(weight);
+        total.add(nanos * weight);
+    }
+
+    private static int index(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - 5;
+        return LINEAR + (shift - 1) * PER_OCTAVE + (int) (value >>> shift) - PER_OCTAVE;
+    }
+
+    // The largest value that lands in the bucket.
+    private static long highest(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = (index - LINEAR) / PER_OCTAVE + 1;
+        long top = (index - LINEAR) % PER_OCTAVE + PER_OCTAVE;
+        return ((top + 1) << shift) - 1;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getMeanNanos() {
+        long count = this.count.sum();
+        return count == 0 ? 0 : total.sum() / count;
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return percentile(0.50);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (buckets.get(i) > 0) {
+                return highest(i);
+            }
+        }
+        return 0;
+    }
+
+    long percentile(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return highest(i);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-10s count=%d mean=%dns p50=%dns p99=%dns max=%dns",
+                name, getCount(), getMeanNanos(), getP50Nanos(), getP99Nanos(), getMaxNanos());
+    }
+}
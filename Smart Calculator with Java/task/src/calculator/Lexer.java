@@ -0,0 +1,240 @@
+package calculator;
+
+import java.math.BigInteger;
+
+class Lexer {
+
+    enum Token {
+        END, NUMBER, IDENTIFIER, OPERATOR, LEFT_PARENTHESIS, RIGHT_PARENTHESIS, ASSIGN, INVALID
+    }
+
+    // powers of ten that fit a long
+    private static final long[] POWERS = new long[FixedPoint.MAX_SCALE + 1];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private final CharSequence input;
+    private final int limit;
+    // numbers may have a fractional part and are read as value * 10^scale when scale > 0
+    private final int scale;
+    private int position;
+
+    private int start;
+    private int end;
+    private char symbol;
+    private long value;
+    private boolean big;
+    private boolean spaced;
+    private boolean point;
+    private int places;
+
+    Lexer(CharSequence input) {
+        this(input, 0, input.length());
+    }
+
+    Lexer(CharSequence input, int from, int to) {
+        this(input, from, to, 0);
+    }
+
+    Lexer(CharSequence input, int from, int to, int scale) {
+        this.input = input;
+        this.position = from;
+        this.limit = to;
+        this.scale = scale;
+    }
+
+    Token next() {
+        skipWhitespace();
+        start = position;
+        spaced = false;
+        if (position >= limit) {
+            end = position;
+            return Token.END;
+        }
+        char ch = input.charAt(position);
+        symbol = ch;
+        if (Character.isDigit(ch)) {
+            scanNumber();
+            return Token.NUMBER;
+        } else if (Character.isLetter(ch)) {
+            scanIdentifier();
+            return Token.IDENTIFIER;
+        }
+        end = ++position;
+        return switch (ch) {
+            case '+', '-', '*', '/', '%', '^' -> Token.OPERATOR;
+            case '(' -> Token.LEFT_PARENTHESIS;
+            case ')' -> Token.RIGHT_PARENTHESIS;
+            case '=' -> Token.ASSIGN;
+            default -> Token.INVALID;
+        };
+    }
+
+    private void scanNumber() {
+        value = 0;
+        big = false;
+        point = false;
+        places = 0;
+        while (true) {
+            char ch = input.charAt(position);
+            if (ch == '.') {
+                point = true;
+            } else {
+                int digit = Character.digit(ch, 10);
+                if (!big && value > (Long.MAX_VALUE - digit) / 10) {
+                    big = true;
+                }
+                value = value * 10 + digit;
+                places += point ? 1 : 0;
+            }
+            end = ++position;
+            if (!continueToken(true)) {
+                break;
+            }
+        }
+        if (scale > 0 && !big) {
+            rescale();
+        }
+    }
+
+    // Turns the digits read into value * 10^scale, rounded half up; leaves the rest to bigValue.
+    private void rescale() {
+        if (places <= scale) {
+            long factor = POWERS[scale - places];
+            big = value > Long.MAX_VALUE / factor;
+            value *= factor;
+        } else if (places - scale < POWERS.length) {
+            long divisor = POWERS[places - scale];
+            long remainder = value % divisor;
+            value = value / divisor + (remainder >= divisor - remainder ? 1 : 0);
+        } else {
+            big = true;
+        }
+    }
+
+    private void scanIdentifier() {
+        do {
+            end = ++position;
+        } while (continueToken(false));
+    }
+
+    private boolean continueToken(boolean digits) {
+        int next = position;
+        while (next < limit && isWhitespace(input.charAt(next))) {
+            next++;
+        }
+        if (next < limit) {
+            char ch = input.charAt(next);
+            if (digits ? Character.isDigit(ch) || ch == '.' && scale > 0 && !point : Character.isLetter(ch)) {
+                spaced |= next != position;
+                position = next;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (position < limit && isWhitespace(input.charAt(position))) {
+            position++;
+        }
+    }
+
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return end;
+    }
+
+    char symbol() {
+        return symbol;
+    }
+
+    boolean fitsLong() {
+        return !big;
+    }
+
+    long longValue() {
+        return value;
+    }
+
+    BigInteger bigValue() {
+        if (!big) {
+            return BigInteger.valueOf(value);
+        }
+        return scale > 0 ? FixedPoint.parse(text(), scale) : Decimal.parse(text());
+    }
+
+    String text() {
+        return spaced ? strip(input, start, end) : input.subSequence(start, end).toString();
+    }
+
+    static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+    }
+
+    // The offset of the first identifier token equal to name, or -1.
+    static int find(CharSequence input, String name) {
+        Lexer lexer = new Lexer(input);
+        Token token;
+        while ((token = lexer.next()) != Token.END) {
+            if (token == Token.IDENTIFIER && lexer.text().equals(name)) {
+                return lexer.start();
+            }
+        }
+        return -1;
+    }
+
+    // Maps an offset in strip(input) to the offset of the same character in input.
+    static int rawOffset(CharSequence input, int offset) {
+        if (offset < 0) {
+            return offset;
+        }
+        int seen = 0;
+        for (int i = 0; i < input.length(); i++) {
+            if (!isWhitespace(input.charAt(i)) && seen++ == offset) {
+                return i;
+            }
+        }
+        return input.length();
+    }
+
+    // Maps an offset in input to the offset of the same character in strip(input).
+    static int strippedOffset(CharSequence input, int offset) {
+        int stripped = 0;
+        for (int i = 0; i < offset && i < input.length(); i++) {
+            stripped += isWhitespace(input.charAt(i)) ? 0 : 1;
+        }
+        return offset < 0 ? offset : stripped;
+    }
+
+    static String strip(CharSequence input) {
+        return strip(input, 0, input.length());
+    }
+
+    static String strip(CharSequence input, int from, int to) {
+        int i = from;
+        while (i < to && !isWhitespace(input.charAt(i))) {
+            i++;
+        }
+        if (i == to) {
+            return input.subSequence(from, to).toString();
+        }
+        StringBuilder builder = new StringBuilder(to - from);
+        builder.append(input, from, i);
+        for (; i < to; i++) {
+            char ch = input.charAt(i);
+            if (!isWhitespace(ch)) {
+                builder.append(ch);
+            }
+        }
+        return builder.toString();
+    }
+}
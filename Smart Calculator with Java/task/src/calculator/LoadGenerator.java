@@ -0,0 +1,128 @@
+package calculator;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Drives a server started with --serve: every connection keeps up to --pipeline requests in flight
+// and the latency of a request is measured from the flush that sent it to the arrival of its reply.
+public class LoadGenerator {
+
+    private static final int FLUSH_EVERY = 32;
+
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = 7777;
+        int connections = 4;
+        int requests = 100_000;
+        int pipeline = 64;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host" -> host = args[++i];
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--connections" -> connections = Integer.parseInt(args[++i]);
+                case "--requests" -> requests = Integer.parseInt(args[++i]);
+                case "--pipeline" -> pipeline = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        long[][] latencies = new long[connections][];
+        long[] errors = new long[connections];
+        Thread[] threads = new Thread[connections];
+        long start = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            String address = host;
+            int target = port;
+            int count = requests;
+            int depth = pipeline;
+            threads[c] = new Thread(() -> {
+                try {
+                    latencies[connection] = new long[count];
+                    errors[connection] = drive(address, target, count, depth, latencies[connection]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        long total = all.length;
+        System.out.printf("%d requests over %d connections in %.3f s (%.0f requests/s), %d errors%n",
+                total, connections, seconds, total / seconds, Arrays.stream(errors).sum());
+        System.out.printf("latency p50 %d us, p99 %d us, p99.9 %d us, max %d us%n",
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999), all[all.length - 1] / 1000);
+    }
+
+    private static long drive(String host, int port, int requests, int pipeline, long[] latencies) throws IOException {
+        AtomicLongArray sent = new AtomicLongArray(requests);
+        Semaphore window = new Semaphore(pipeline);
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Thread writer = new Thread(() -> {
+                try {
+                    int unflushed = 0;
+                    for (int i = 0; i < requests; i++) {
+                        window.acquireUninterruptibly();
+                        out.write(request(i).getBytes(StandardCharsets.UTF_8));
+                        if (i - unflushed + 1 >= FLUSH_EVERY || window.availablePermits() == 0 || i == requests - 1) {
+                            long now = System.nanoTime();
+                            for (; unflushed <= i; unflushed++) {
+                                sent.set(unflushed, now);
+                            }
+                            out.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.start();
+
+            long errors = 0;
+            for (int i = 0; i < requests; i++) {
+                String reply = in.readLine();
+                if (reply == null) {
+                    throw new IOException("Connection closed after " + i + " replies");
+                }
+                latencies[i] = System.nanoTime() - sent.get(i);
+                window.release();
+                if (!reply.isEmpty() && !Character.isDigit(reply.charAt(reply.length() - 1))) {
+                    errors++;
+                }
+            }
+            writer.join();
+            return errors;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static String request(int i) {
+        return i % 10 == 0 ? "x = " + i + "\n" : "x * 3 + " + i + " - (x / 7) ^ 2\n";
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1000;
+    }
+}
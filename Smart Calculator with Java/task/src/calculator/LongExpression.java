@@ -0,0 +1,9 @@
+package calculator;
+
+@FunctionalInterface
+interface LongExpression {
+
+    // Throws ArithmeticException when an argument or an intermediate result does not fit in a long,
+    // or on division by zero; the caller then falls back to the interpreter.
+    long evaluate(Bindings arguments);
+}
@@ -0,0 +1,150 @@
+package calculator;
+
+final class LongMath {
+
+    // Thrown when a result does not fit in a long or needs BigInteger semantics (a zero divisor,
+    // a negative exponent of zero); callers catch it and redo the step with BigInteger.
+    static final ArithmeticException OVERFLOW = new ArithmeticException("long overflow") {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    private LongMath() {
+    }
+
+    static long add(long x, long y) {
+        long result = x + y;
+        if (((x ^ result) & (y ^ result)) < 0) {
+            throw OVERFLOW;
+        }
+        return result;
+    }
+
+    static long subtract(long x, long y) {
+        long result = x - y;
+        if (((x ^ y) & (x ^ result)) < 0) {
+            throw OVERFLOW;
+        }
+        return result;
+    }
+
+    static long multiply(long x, long y) {
+        long result = x * y;
+        if (Math.multiplyHigh(x, y) != result >> 63) {
+            throw OVERFLOW;
+        }
+        return result;
+    }
+
+    static long divide(long x, long y) {
+        if (y == 0 || y == -1 && x == Long.MIN_VALUE) {
+            throw OVERFLOW;
+        }
+        return x / y;
+    }
+
+    static long remainder(long x, long y) {
+        if (y == 0) {
+            throw OVERFLOW;
+        }
+        return x % y;
+    }
+
+    static long negate(long x) {
+        if (x == Long.MIN_VALUE) {
+            throw OVERFLOW;
+        }
+        return -x;
+    }
+
+    static long power(long x, long y) {
+        if (y < 0) {
+            if (x == 0) {
+                throw OVERFLOW;
+            }
+            return x == 1 || x == -1 && (y & 1) == 0 ? 1 : x == -1 ? -1 : 0;
+        }
+        long result = 1;
+        while (true) {
+            if ((y & 1) != 0) {
+                result = multiply(result, x);
+            }
+            y >>= 1;
+            if (y == 0) {
+                return result;
+            }
+            x = multiply(x, x);
+        }
+    }
+
+    // x^y % m without the intermediate power; the sign follows the remainder of x^y, as in (x^y) % m.
+    static long powerMod(long x, long y, long m) {
+        long modulus = Math.abs(m);
+        if (y < 0 || modulus == 0 || modulus > Integer.MAX_VALUE) {
+            throw OVERFLOW;
+        }
+        long base = Math.abs(x % modulus);
+        long result = 1 % modulus;
+        for (long exponent = y; exponent > 0; exponent >>= 1) {
+            if ((exponent & 1) != 0) {
+                result = result * base % modulus;
+            }
+            base = base * base % modulus;
+        }
+        return x < 0 && (y & 1) != 0 ? -result : result;
+    }
+
+    // The fixed-point operations of FixedPoint, with factor = 10^scale > 0. A product that overflows
+    // is split as (q * factor + r) * y, so a result that fits is still found without BigInteger.
+    static long multiplyScaled(long x, long y, long factor) {
+        long product = x * y;
+        if (Math.multiplyHigh(x, y) == product >> 63) {
+            long quotient = product / factor;
+            return round(quotient, product - quotient * factor, factor);
+        }
+        long high = x / factor;
+        long remainder = multiply(x - high * factor, y);
+        long low = remainder / factor;
+        return round(add(multiply(high, y), low), remainder - low * factor, factor);
+    }
+
+    static long divideScaled(long x, long y, long factor) {
+        if (y == 0 || y == Long.MIN_VALUE) {
+            throw OVERFLOW;
+        }
+        long product = x * factor;
+        if (Math.multiplyHigh(x, factor) == product >> 63) {
+            long quotient = divide(product, y);
+            return round(quotient, product - quotient * y, y);
+        }
+        long high = divide(x, y);
+        long remainder = multiply(x - high * y, factor);
+        long low = remainder / y;
+        return round(add(multiply(high, factor), low), remainder - low * y, y);
+    }
+
+    static long powerScaled(long x, long y, long factor) {
+        if (y < 0 || y % factor != 0) {
+            throw OVERFLOW;
+        }
+        long n = y / factor;
+        if (n == 0) {
+            return factor;
+        }
+        long power = power(x, n);
+        long divisor = power(factor, n - 1);
+        return round(power / divisor, power % divisor, divisor);
+    }
+
+    // quotient + remainder / divisor rounded half away from zero, where |remainder| < |divisor| and
+    // quotient and remainder / divisor do not have opposite signs.
+    private static long round(long quotient, long remainder, long divisor) {
+        long r = Math.abs(remainder);
+        if (r < Math.abs(divisor) - r) {
+            return quotient;
+        }
+        return add(quotient, (remainder ^ divisor) < 0 ? -1 : 1);
+    }
+}
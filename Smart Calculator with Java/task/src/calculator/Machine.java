@@ -0,0 +1,230 @@
+package calculator;
+
+import java.math.BigInteger;
+
+final class Machine {
+
+    private long[] values = new long[16];
+    private BigInteger[] bigs = new BigInteger[16];
+    private long[] tempValues = new long[16];
+    private BigInteger[] tempBigs = new BigInteger[16];
+    private final Bindings arguments = new Bindings(16);
+    private Memo memo;
+    private int evaluations;
+
+    // Values remembered here are reused by later runs as long as the variables they read are unchanged.
+    void memo(Memo memo) {
+        this.memo = memo;
+    }
+
+    // Returns the index in program.names of a variable with no value, which leaves the program
+    // unevaluated, or -1.
+    int run(Program program, Environment environment) throws CalculatorException {
+        arguments.ensureCapacity(program.slots.length);
+        int missing = bind(program, environment, arguments);
+        if (missing < 0) {
+            execute(program, arguments, memo);
+        }
+        return missing;
+    }
+
+    // Loads the arguments of program; returns the index of the first one with no value, or -1.
+    static int bind(Program program, Environment environment, Bindings arguments) {
+        for (int i = 0; i < program.slots.length; i++) {
+            if (!environment.load(program.slot(i, environment.symbols()), arguments, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void execute(Program program, Bindings arguments) throws CalculatorException {
+        execute(program, arguments, null);
+    }
+
+    private void execute(Program program, Bindings arguments, Memo memo) throws CalculatorException {
+        if (Metrics.ENABLED && (++evaluations & Metrics.SAMPLE - 1) == 0) {
+            long start = System.nanoTime();
+            try {
+                evaluate(program, arguments, memo);
+            } finally {
+                Metrics.EVALUATE.record(System.nanoTime() - start, Metrics.SAMPLE);
+            }
+        } else {
+            evaluate(program, arguments, memo);
+        }
+    }
+
+    private void evaluate(Program program, Bindings arguments, Memo memo) throws CalculatorException {
+        // compiled code cannot consult the memo, so a memoizing run stays in the interpreter
+        LongExpression compiled = memo != null && program.memoIds.length > 0 ? null : program.compiled();
+        if (compiled != null) {
+            try {
+                values[0] = compiled.evaluate(arguments);
+                bigs[0] = null;
+                return;
+            } catch (ArithmeticException e) {
+                program.deoptimize();
+            }
+        }
+        interpret(program, arguments, memo);
+    }
+
+    private void interpret(Program program, Bindings arguments, Memo memo) throws CalculatorException {
+        if (values.length < program.maxStack) {
+            values = new long[program.maxStack];
+            bigs = new BigInteger[program.maxStack];
+        }
+        if (tempValues.length < program.temps) {
+            tempValues = new long[program.temps];
+            tempBigs = new BigInteger[program.temps];
+        }
+        long[] values = this.values;
+        BigInteger[] bigs = this.bigs;
+        long[] tempValues = this.tempValues;
+        BigInteger[] tempBigs = this.tempBigs;
+        long[] argumentValues = arguments.values;
+        BigInteger[] argumentBigs = arguments.bigs;
+        int[] code = program.code;
+        int top = -1;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            int opcode = code[pc];
+            switch (opcode) {
+                case Program.PUSH -> {
+                    top++;
+                    values[top] = program.constants[code[++pc]];
+                    bigs[top] = null;
+                }
+                case Program.PUSH_BIG -> bigs[++top] = program.bigConstants[code[++pc]];
+                case Program.LOAD -> {
+                    int argument = code[++pc];
+                    top++;
+                    values[top] = argumentValues[argument];
+                    bigs[top] = argumentBigs[argument];
+                }
+                case Program.SAVE -> {
+                    int temp = code[++pc];
+                    tempValues[temp] = values[top];
+                    tempBigs[temp] = bigs[top];
+                }
+                case Program.RESTORE -> {
+                    int temp = code[++pc];
+                    top++;
+                    values[top] = tempValues[temp];
+                    bigs[top] = tempBigs[temp];
+                }
+                case Program.MEMO -> {
+                    int index = code[++pc];
+                    int target = code[++pc];
+                    if (memo != null && memo.load(program, index, values, bigs, top + 1)) {
+                        top++;
+                        pc = target - 1;
+                    }
+                }
+                case Program.REMEMBER -> {
+                    int index = code[++pc];
+                    if (memo != null) {
+                        memo.store(program, index, values[top], bigs[top]);
+                    }
+                }
+                case Program.NEGATE -> {
+                    if (bigs[top] == null && values[top] != Long.MIN_VALUE) {
+                        values[top] = -values[top];
+                    } else {
+                        promote(opcode, top, top);
+                    }
+                }
+                case Program.POWER_MOD, Program.MULTIPLY_SCALED, Program.DIVIDE_SCALED, Program.POWER_SCALED -> {
+                    top -= 2;
+                    if (bigs[top] != null || bigs[top + 1] != null || bigs[top + 2] != null
+                            || !exactTernary(opcode, values, top)) {
+                        store(top, ternary(opcode, big(top), big(top + 1), big(top + 2)));
+                    }
+                }
+                default -> {
+                    top--;
+                    if (bigs[top] != null || bigs[top + 1] != null || !exact(opcode, values, top)) {
+                        promote(opcode, top, top + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean exact(int opcode, long[] values, int top) {
+        long x = values[top];
+        long y = values[top + 1];
+        try {
+            values[top] = switch (opcode) {
+                case Program.ADD -> LongMath.add(x, y);
+                case Program.SUBTRACT -> LongMath.subtract(x, y);
+                case Program.MULTIPLY -> LongMath.multiply(x, y);
+                case Program.DIVIDE -> LongMath.divide(x, y);
+                case Program.REMAINDER -> LongMath.remainder(x, y);
+                case Program.POWER -> LongMath.power(x, y);
+                default -> throw new IllegalStateException("Unknown opcode " + opcode);
+            };
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private static boolean exactTernary(int opcode, long[] values, int top) {
+        long x = values[top];
+        long y = values[top + 1];
+        long z = values[top + 2];
+        try {
+            values[top] = switch (opcode) {
+                case Program.POWER_MOD -> LongMath.powerMod(x, y, z);
+                case Program.MULTIPLY_SCALED -> LongMath.multiplyScaled(x, y, z);
+                case Program.DIVIDE_SCALED -> LongMath.divideScaled(x, y, z);
+                case Program.POWER_SCALED -> LongMath.powerScaled(x, y, z);
+                default -> throw new IllegalStateException("Unknown opcode " + opcode);
+            };
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private static BigInteger ternary(int opcode, BigInteger x, BigInteger y, BigInteger z) throws CalculatorException {
+        return switch (opcode) {
+            case Program.POWER_MOD -> Operation.powerMod(x, y, z);
+            case Program.MULTIPLY_SCALED -> FixedPoint.multiply(x, y, z);
+            case Program.DIVIDE_SCALED -> FixedPoint.divide(x, y, z);
+            case Program.POWER_SCALED -> FixedPoint.power(x, y, z);
+            default -> throw new IllegalStateException("Unknown opcode " + opcode);
+        };
+    }
+
+    private void promote(int opcode, int x, int y) throws CalculatorException {
+        store(x, Program.operation(opcode).apply(big(x), big(y)));
+    }
+
+    private void store(int index, BigInteger result) {
+        if (Operation.fitsLong(result)) {
+            values[index] = result.longValue();
+            bigs[index] = null;
+        } else {
+            bigs[index] = result;
+        }
+    }
+
+    private BigInteger big(int index) {
+        return bigs[index] != null ? bigs[index] : BigInteger.valueOf(values[index]);
+    }
+
+    boolean fitsLong() {
+        return bigs[0] == null;
+    }
+
+    long longResult() {
+        return values[0];
+    }
+
+    BigInteger bigResult() {
+        return bigs[0] != null ? bigs[0] : BigInteger.valueOf(values[0]);
+    }
+}
@@ -1,310 +1,224 @@
 package calculator;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PushbackReader;
+import java.io.Reader;
 import java.math.BigInteger;
-import java.util.*;
-import java.util.function.BiFunction;
-import java.util.function.Function;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Scanner;
 
 public class Main {
 
-    private static final Map<String, BigInteger> variables = new HashMap<>();
-    private static final List<Element> postfix = new ArrayList<>();
-    private static final List<Element> infix = new ArrayList<>();
-
-    public static void main(String[] args) {
-        Scanner sc = new Scanner(System.in);
-        String input;
-        while (!Objects.equals(input = sc.nextLine(), "/exit")) {
-            if (!input.isBlank()) {
-                if (input.equals("/help")) {
-                    System.out.println("The program calculates all.");
-                } else if (input.startsWith("/")) {
-                    System.out.println("Unknown command");
-                } else {
-                    try {
-                        input = input.replaceAll("\\s+", "");
-                        if (parseInput(input)) {
-//                            printStack(infix);
-                            convertToPostfix();
-//                            printStack(postfix);
-                            calculate();
-                        }
-                    } catch (CalculatorException e) {
-                        System.out.println(e.getMessage());
-                    }
-                }
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("-e")) {
+            if (!evaluate(args[1])) {
+                System.exit(1);
             }
+            return;
         }
-        System.out.println("Bye!");
-    }
-
-    private static void printStack(List<Element> elements) {
-        elements.forEach(element -> System.out.print(element + " "));
-        System.out.println();
-    }
-
-    private static void calculate() {
-        Deque<Element> stack = new ArrayDeque<>();
-
-        for (Element element : postfix) {
-            switch (element.type) {
-                case NUMBER, VARIABLE -> stack.push(element);
-                case BINARY_OPERATOR -> {
-                    BigInteger x = ((Number) stack.pop()).number;
-                    BigInteger y = ((Number) stack.pop()).number;
-                    stack.push(new Number(Type.NUMBER, ((BinaryOperator) element).biOperator.apply(y, x)));
-                }
-                case UNARY_OPERATOR -> {
-                    BigInteger y = ((Number) stack.pop()).number;
-                    stack.push(new Number(Type.NUMBER, ((UnaryOperator) element).unOperator.apply(y)));
+        Path batch = null;
+        Path out = null;
+        Path wal = null;
+        Path stream = null;
+        int port = -1;
+        int scale = 0;
+        boolean parallel = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--batch" -> batch = Path.of(args[++i]);
+                case "--out" -> out = Path.of(args[++i]);
+                case "--parallel" -> parallel = true;
+                case "--wal" -> wal = Path.of(args[++i]);
+                case "--stream" -> stream = Path.of(args[++i]);
+                case "--serve" -> port = Integer.parseInt(args[++i]);
+                case "--scale" -> scale = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
                 }
             }
         }
 
-        System.out.println(((Number) stack.pop()).number);
-    }
-
-    private static void convertToPostfix() throws CalculatorException {
-        postfix.clear();
-        Deque<Element> stack = new ArrayDeque<>();
-        for (Element element : infix) {
-            switch (element.type) {
-                case VARIABLE, NUMBER -> {
-                    postfix.add(element);
-                    while (!stack.isEmpty() && stack.peek().type == Type.UNARY_OPERATOR) {
-                        postfix.add(stack.pop());
-                    }
-                }
-                case BINARY_OPERATOR -> {
-                    if (stack.isEmpty() || ((Operator)stack.peek()).priority < ((Operator)element).priority) {
-                        stack.push(element);
-                    } else {
-                        while (!stack.isEmpty() && ((Operator)stack.peek()).priority >= ((Operator)element).priority) {
-                            postfix.add(stack.pop());
-                        }
-                        stack.push(element);
-                    }
-                }
-                case UNARY_OPERATOR, LEFT_PARENTHESIS -> stack.push(element);
-                case RIGHT_PARENTHESIS -> {
-                    while (!(stack.isEmpty() || stack.peek().type == Type.LEFT_PARENTHESIS)) {
-                        postfix.add(stack.pop());
-                    }
-                    if (stack.isEmpty() || stack.peek().type != Type.LEFT_PARENTHESIS) {
-                        throw new CalculatorException("Invalid expression");
-                    } else {
-                        stack.pop();
-                    }
-                }
-            }
+        if (scale < 0 || scale > FixedPoint.MAX_SCALE) {
+            System.err.println("--scale must be between 0 and " + FixedPoint.MAX_SCALE);
+            System.exit(2);
+        } else if (scale > 0 && stream != null) {
+            System.err.println("--stream works on integers only");
+            System.exit(2);
         }
-        while (!stack.isEmpty()) {
-            Element element = stack.pop();
-            if (element.type == Type.LEFT_PARENTHESIS || element.type == Type.RIGHT_PARENTHESIS) {
-                throw new CalculatorException("Invalid expression");
-            } else {
-                postfix.add(element);
-            }
+        Calculator calculator = new Calculator(Calculator.CACHE_SIZE, scale);
+        if (port >= 0) {
+            new Server(calculator, port).run();
+            return;
         }
-    }
-
-    private static boolean parseInput(String input) throws CalculatorException {
-        String[] parts = input.split("=");
-        if (parts.length == 2) {
-            String variable = parts[0];
-            String assignment = parts[1];
-            if (variable.matches("[A-Za-z]+")) {
-                if (assignment.matches("[-+]?\\d+")) {
-                    variables.put(variable, new BigInteger(assignment));
-                } else if (!assignment.matches("[A-Za-z]+")) {
-                    throw new CalculatorException("Invalid assignment");
-                } else if (variables.containsKey(assignment)) {
-                    variables.put(variable, variables.get(assignment));
-                } else {
-                    throw new CalculatorException("Unknown variable");
+        Session session = calculator.newSession();
+        // the log journals the session's assignments; closing it waits until they are on disk
+        WriteAheadLog log = wal == null ? null : recover(wal, session);
+        try {
+            if (stream != null) {
+                try (Reader reader = new InputStreamReader(Files.newInputStream(stream), StandardCharsets.UTF_8)) {
+                    stream(session, reader, System.out);
                 }
+            } else if (batch != null && parallel) {
+                new ParallelBatch(session).run(batch, out);
+            } else if (batch != null) {
+                new Batch(session).run(batch, out);
             } else {
-                throw new CalculatorException("Invalid identifier");
+                repl(session, new Scanner(System.in), System.out);
             }
-            return false;
-        } else if (parts.length > 2) {
-            throw new CalculatorException("Invalid assignment");
-        }
-
-        infix.clear();
-        String token = "";
-        Type currentType = Type.BINARY_OPERATOR;
-        for (char ch : input.toCharArray()) {
-            if (ch == '+' || ch == '-' || ch == '*' || ch == '/' || ch == '^') {
-                if (currentType == Type.VARIABLE || currentType == Type.NUMBER || currentType == Type.RIGHT_PARENTHESIS) {
-                    addToken(currentType, token);
-                    token = "";
-                    currentType = Type.BINARY_OPERATOR;
-                    int priority = 0;
-                    BiFunction<BigInteger, BigInteger, BigInteger> function = null;
-                    switch (ch) {
-                        case '+' -> {
-                            function = BigInteger::add;
-                            priority = 1;
-                        }
-                        case '-' -> {
-                            function = BigInteger::subtract;
-                            priority = 1;
-                        }
-                        case '*' -> {
-                            function = BigInteger::multiply;
-                            priority = 2;
-                        }
-                        case '/' -> {
-                            function = BigInteger::divide;
-                            priority = 2;
-                        }
-                    }
-                    infix.add(new BinaryOperator(currentType, priority, function, ch));
-                } else {
-                    currentType = Type.UNARY_OPERATOR;
-                    Function<BigInteger, BigInteger> function = switch (ch) {
-                        case '+' -> Function.identity();
-                        case '-' -> BigInteger::negate;
-                        default -> throw new CalculatorException("Invalid expression");
-                    };
-                    infix.add(new UnaryOperator(currentType, 4, function, ch));
-                }
-            } else if (Character.isDigit(ch)) {
-                if (currentType == Type.VARIABLE) {
-                    addToken(currentType, token);
-                    token = "";
-                }
-                currentType = Type.NUMBER;
-                token = token.concat(String.valueOf(ch));
-            } else if (Character.isLetter(ch)) {
-                if (currentType == Type.NUMBER) {
-                    addToken(currentType, token);
-                    token = "";
-                }
-                currentType = Type.VARIABLE;
-                token = token.concat(String.valueOf(ch));
-            } else if (ch == '(') {
-                currentType = Type.LEFT_PARENTHESIS;
-                infix.add(new Operator(currentType, 0, ch));
-            } else if (ch == ')') {
-                addToken(currentType, token);
-                token = "";
-                currentType = Type.RIGHT_PARENTHESIS;
-                infix.add(new Operator(currentType, 0, ch));
-            } else {
-                throw new CalculatorException("Invalid expression");
+        } finally {
+            if (log != null) {
+                log.close();
             }
         }
+    }
 
-        if (!token.isEmpty()) {
-            addToken(currentType, token);
+    private static WriteAheadLog recover(Path wal, Session session) {
+        try {
+            return WriteAheadLog.open(wal, session);
+        } catch (IOException e) {
+            System.err.println("Cannot recover " + wal + ": " + e.getMessage());
+            System.exit(2);
+            return null;
         }
-
-        return true;
     }
 
-    private static void addToken(Type type, String token) throws CalculatorException {
-        if (token.isEmpty()) {
-            return;
+    // calc -e "expression": one line for a script that runs the calculator once per expression, on
+    // a path that loads no Scanner, regex or lambda classes, so startup is mostly the JVM's own.
+    // An error goes to stderr and makes the exit status 1.
+    private static boolean evaluate(String input) {
+        Calculator calculator = new Calculator(0);
+        Result result = calculator.newSession().run(input);
+        if (result.isError()) {
+            System.err.println(result.error().message());
+            return false;
+        } else if (result.value() != null) {
+            System.out.println(FixedPoint.toString(result.value(), calculator.scale()));
         }
+        return true;
+    }
 
-        switch (type) {
-            case NUMBER -> {
-                try {
-                    infix.add(new Number(type, new BigInteger(token)));
-                } catch (NumberFormatException e) {
-                    throw new CalculatorException("Invalid expression");
-                }
+    static void repl(Session session, Scanner sc, PrintStream out) throws IOException {
+        String input;
+        while (!Objects.equals(input = sc.nextLine(), "/exit")) {
+            if (Metrics.ENABLED) {
+                Metrics.lines(1);
             }
-            case VARIABLE -> {
-                if (variables.containsKey(token)) {
-                    infix.add(new Variable(type, variables.get(token), token));
-                } else {
-                    throw new CalculatorException("Unknown variable");
-                }
+            if (respond(session, input, out)) {
+                out.println();
             }
         }
+        out.println("Bye!");
     }
-}
 
-class Element {
-    Type type;
-
-    Element(Type type) {
-        this.type = type;
-    }
-}
-
-class Number extends Element {
-    BigInteger number;
-
-    Number(Type type, BigInteger number) {
-        super(type);
-        this.number = number;
-    }
-
-    @Override
-    public String toString() {
-        return String.valueOf(number);
-    }
-}
-
-class Variable extends Number {
-    String variable;
-
-    Variable(Type type, BigInteger number, String variable) {
-        super(type, number);
-        this.variable = variable;
-    }
-
-    @Override
-    public String toString() {
-        return variable;
-    }
-}
-
-class Operator extends Element {
-    int priority;
-    String symbol;
-
-    Operator(Type type, int priority, char symbol) {
-        super(type);
-        this.priority = priority;
-        this.symbol = String.valueOf(symbol);
+    static String respond(Session session, String input) {
+        Object reply = reply(session, input);
+        return reply instanceof BigInteger result ? FixedPoint.toString(result, session.calculator().scale())
+                : (String) reply;
     }
 
-    @Override
-    public String toString() {
-        return symbol;
+    // Like respond, but a result goes straight to out, a few hundred digits at a time when it is huge;
+    // returns false when there is nothing to print.
+    static boolean respond(Session session, String input, Appendable out) throws IOException {
+        Object reply = reply(session, input);
+        if (reply instanceof BigInteger result) {
+            FixedPoint.write(result, session.calculator().scale(), out);
+        } else if (reply != null) {
+            out.append((String) reply);
+        }
+        return reply != null;
+    }
+
+    // A message, a result or null.
+    private static Object reply(Session session, String input) {
+        if (input.isBlank()) {
+            return null;
+        } else if (input.equals("/help")) {
+            return "The program calculates all.";
+        } else if (input.equals("/stats")) {
+            return Metrics.report(session.calculator());
+        } else if (input.startsWith("/save ") || input.startsWith("/load ")) {
+            return snapshot(session, input.substring(1, 5), Path.of(input.substring(6).strip()));
+        } else if (input.startsWith("/")) {
+            return "Unknown command";
+        }
+        Result result = session.run(input);
+        if (result.error() == ErrorCode.DIVISION_BY_ZERO) {
+            // the REPL and --batch have always ended on a division by zero
+            throw new ArithmeticException(result.error().message());
+        } else if (result.isError()) {
+            if (Metrics.ENABLED) {
+                Metrics.error(result.error().message());
+            }
+            return result.error().message();
+        }
+        return result.value();
     }
-}
-
-class BinaryOperator extends Operator {
-    BiFunction<BigInteger, BigInteger, BigInteger> biOperator;
 
-    BinaryOperator(Type type, int priority, BiFunction<BigInteger, BigInteger, BigInteger> biOperator, char symbol) {
-        super(type, priority, symbol);
-        this.biOperator = biOperator;
+    // The whole input is one expression, whatever line breaks it holds, and the output is what the
+    // REPL prints for it on one line; input starting with / is a command line as in the REPL.
+    static void stream(Session session, Reader reader, PrintStream out) throws IOException {
+        PushbackReader input = new PushbackReader(reader);
+        int first = input.read();
+        int ch = first;
+        while (ch >= 0 && Lexer.isWhitespace((char) ch)) {
+            ch = input.read();
+        }
+        if (ch < 0) {
+            return;
+        } else if (first == '/') {
+            String command = command(input);
+            if (command.equals("/exit")) {
+                out.println("Bye!");
+            } else if (respond(session, command, out)) {
+                out.println();
+            }
+            return;
+        }
+        input.unread(ch);
+        try {
+            Decimal.write(Operation.printable(session.evaluate(input)), out);
+        } catch (CalculatorException e) {
+            out.print(e.getMessage());
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException(ErrorCode.DIVISION_BY_ZERO.message());
+        }
+        out.println();
     }
-}
 
-class UnaryOperator extends Operator {
-    Function<BigInteger, BigInteger> unOperator;
-
-    UnaryOperator(Type type, int priority, Function<BigInteger, BigInteger> unOperator, char symbol) {
-        super(type, priority, symbol);
-        this.unOperator = unOperator;
+    // The command: the rest of the input without its final line terminator.
+    private static String command(Reader reader) throws IOException {
+        StringBuilder line = new StringBuilder("/");
+        char[] buffer = new char[256];
+        for (int read; (read = reader.read(buffer)) > 0; ) {
+            line.append(buffer, 0, read);
+        }
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\n') {
+            end--;
+        }
+        if (end > 0 && line.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return line.substring(0, end);
     }
-}
 
-enum Type {
-    NUMBER, VARIABLE, UNARY_OPERATOR, BINARY_OPERATOR, LEFT_PARENTHESIS, RIGHT_PARENTHESIS
-}
-
-class CalculatorException extends Exception {
-    public CalculatorException(String text) {
-        super(text);
+    private static String snapshot(Session session, String command, Path file) {
+        try {
+            if (command.equals("save")) {
+                int saved = Snapshot.save(session.environment(), session.calculator().scale(), file);
+                return "Saved " + saved + " variables";
+            }
+            return "Loaded " + Snapshot.load(session, file) + " variables";
+        } catch (CalculatorException e) {
+            return e.getMessage();
+        } catch (IOException e) {
+            return "Cannot " + command + " " + file;
+        }
     }
 }
-
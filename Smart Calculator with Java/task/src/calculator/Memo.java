@@ -0,0 +1,43 @@
+package calculator;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+// Values of the memoized subtrees of earlier lines, for a batch. A direct-mapped cache keyed by
+// SubexpressionTable id: an entry is valid while none of the variables its subtree reads has been
+// assigned since it was stored, which the environment's version stamps tell.
+final class Memo {
+
+    private static final int SIZE = 4096;
+
+    private final Environment environment;
+    private final int[] ids = new int[SIZE];
+    private final long[] stamps = new long[SIZE];
+    private final long[] values = new long[SIZE];
+    private final BigInteger[] bigs = new BigInteger[SIZE];
+
+    Memo(Environment environment) {
+        this.environment = environment;
+        Arrays.fill(ids, -1);
+    }
+
+    // Copies the value of memo index of program to values[top] and bigs[top], or returns false.
+    boolean load(Program program, int index, long[] values, BigInteger[] bigs, int top) {
+        int id = program.memoIds[index];
+        int entry = id & SIZE - 1;
+        if (ids[entry] != id || !environment.unchangedSince(program.memoSlots[index], stamps[entry])) {
+            return false;
+        }
+        values[top] = this.values[entry];
+        bigs[top] = this.bigs[entry];
+        return true;
+    }
+
+    void store(Program program, int index, long value, BigInteger big) {
+        int entry = program.memoIds[index] & SIZE - 1;
+        ids[entry] = program.memoIds[index];
+        stamps[entry] = environment.version();
+        values[entry] = value;
+        bigs[entry] = big;
+    }
+}
@@ -0,0 +1,99 @@
+package calculator;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Counters and per-stage latency histograms, switched on with -Dcalculator.metrics=true. Every
+// probe is guarded by the constant ENABLED, so the JIT removes them when metrics are off.
+final class Metrics {
+
+    static final boolean ENABLED = Boolean.getBoolean("calculator.metrics");
+    // Evaluation takes about as long as the two nanoTime calls around it, so only one evaluation
+    // in SAMPLE is timed; a power of two.
+    static final int SAMPLE = 16;
+
+    static final Histogram PARSE = new Histogram("parse");
+    static final Histogram POSTFIX = new Histogram("postfix");
+    static final Histogram OPTIMIZE = new Histogram("optimize");
+    static final Histogram ASSEMBLE = new Histogram("assemble");
+    static final Histogram EVALUATE = new Histogram("evaluate");
+    private static final Histogram[] STAGES = {PARSE, POSTFIX, OPTIMIZE, ASSEMBLE, EVALUATE};
+
+    private static final LongAdder LINES = new LongAdder();
+    private static final LongAdder DEOPTIMIZATIONS = new LongAdder();
+    private static final Map<String, LongAdder> ERRORS = new ConcurrentHashMap<>();
+
+    static {
+        if (ENABLED) {
+            register();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    static void lines(int count) {
+        LINES.add(count);
+    }
+
+    static void error(String message) {
+        ERRORS.computeIfAbsent(message, key -> new LongAdder()).increment();
+    }
+
+    static void deoptimized() {
+        DEOPTIMIZATIONS.increment();
+    }
+
+    static String report(Calculator calculator) {
+        if (!ENABLED) {
+            return "Metrics are disabled";
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append("lines=").append(LINES.sum()).append(" deoptimizations=").append(DEOPTIMIZATIONS.sum());
+        builder.append("\nerrors ").append(errors());
+        builder.append("\ncache ").append(calculator.cacheStats());
+        for (Histogram stage : STAGES) {
+            builder.append('\n').append(stage);
+        }
+        return builder.toString();
+    }
+
+    private static Map<String, Long> errors() {
+        Map<String, Long> errors = new TreeMap<>();
+        ERRORS.forEach((message, count) -> errors.put(message, count.sum()));
+        return errors;
+    }
+
+    private static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new MetricsMXBean() {
+                @Override
+                public long getLines() {
+                    return LINES.sum();
+                }
+
+                @Override
+                public long getDeoptimizations() {
+                    return DEOPTIMIZATIONS.sum();
+                }
+
+                @Override
+                public Map<String, Long> getErrors() {
+                    return errors();
+                }
+            }, new ObjectName("calculator:type=Metrics"));
+            for (Histogram stage : STAGES) {
+                server.registerMBean(stage, new ObjectName("calculator:type=Stage,name=" + stage.getName()));
+            }
+        } catch (JMException e) {
+            System.err.println("Cannot register metrics MBeans: " + e.getMessage());
+        }
+    }
+}
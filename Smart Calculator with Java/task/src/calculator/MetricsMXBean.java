@@ -0,0 +1,12 @@
+package calculator;
+
+import java.util.Map;
+
+public interface MetricsMXBean {
+
+    long getLines();
+
+    long getDeoptimizations();
+
+    Map<String, Long> getErrors();
+}
@@ -0,0 +1,21 @@
+package calculator;
+
+import java.math.BigInteger;
+
+class Number extends Element {
+    final BigInteger number;
+    final long value;
+    final boolean small;
+
+    Number(Type type, BigInteger number) {
+        super(type);
+        this.number = number;
+        this.value = number.longValue();
+        this.small = Operation.fitsLong(number);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(number);
+    }
+}
@@ -0,0 +1,78 @@
+package calculator;
+
+import java.math.BigInteger;
+
+enum Operation {
+    ADD, SUBTRACT, MULTIPLY, DIVIDE, REMAINDER, POWER, NEGATE, PLUS;
+
+    // The largest result of ^ and *, and the largest value printed, in bits, so that one line cannot
+    // take the heap or the CPU of a shared calculator.
+    static final int MAX_RESULT_BITS = Integer.getInteger("calculator.result.maxBits", 1 << 22);
+
+    BigInteger apply(BigInteger x, BigInteger y) throws CalculatorException {
+        return switch (this) {
+            case ADD -> x.add(y);
+            case SUBTRACT -> x.subtract(y);
+            case MULTIPLY -> multiply(x, y);
+            case DIVIDE -> x.divide(y);
+            case REMAINDER -> x.remainder(y);
+            case POWER -> power(x, y);
+            case NEGATE -> x.negate();
+            case PLUS -> x;
+        };
+    }
+
+    boolean isRightAssociative() {
+        return this == POWER;
+    }
+
+    // Integer power: a negative exponent behaves like 1 / x^-y, so it is 0 unless x is 1 or -1
+    // and fails like a division by zero when x is 0.
+    static BigInteger power(BigInteger x, BigInteger y) throws CalculatorException {
+        if (y.signum() < 0) {
+            if (x.signum() == 0) {
+                return BigInteger.ONE.divide(x);
+            } else if (!x.abs().equals(BigInteger.ONE)) {
+                return BigInteger.ZERO;
+            }
+            return x.signum() < 0 && y.testBit(0) ? x : BigInteger.ONE;
+        } else if (x.abs().compareTo(BigInteger.ONE) <= 0) {
+            if (y.signum() == 0) {
+                return BigInteger.ONE;
+            }
+            return x.signum() < 0 && !y.testBit(0) ? BigInteger.ONE : x;
+        } else if (y.bitLength() >= Integer.SIZE
+                || (long) x.abs().subtract(BigInteger.ONE).bitLength() * y.intValue() >= MAX_RESULT_BITS) {
+            // ceil(log2 |x|) * y bits at most
+            throw new CalculatorException(ErrorCode.RESULT_TOO_LARGE);
+        }
+        return BigMath.pow(x, y.intValue());
+    }
+
+    static BigInteger multiply(BigInteger x, BigInteger y) throws CalculatorException {
+        if ((long) x.bitLength() + y.bitLength() > MAX_RESULT_BITS) {
+            throw new CalculatorException(ErrorCode.RESULT_TOO_LARGE);
+        }
+        return BigMath.multiply(x, y);
+    }
+
+    // value, unless it is too large to print.
+    static BigInteger printable(BigInteger value) throws CalculatorException {
+        if (value.bitLength() > MAX_RESULT_BITS) {
+            throw new CalculatorException(ErrorCode.RESULT_TOO_LARGE);
+        }
+        return value;
+    }
+
+    static BigInteger powerMod(BigInteger x, BigInteger y, BigInteger m) throws CalculatorException {
+        if (m.signum() == 0 || y.signum() < 0) {
+            return power(x, y).remainder(m);
+        }
+        BigInteger result = x.abs().modPow(y, m.abs());
+        return x.signum() < 0 && y.testBit(0) ? result.negate() : result;
+    }
+
+    static boolean fitsLong(BigInteger value) {
+        return value.bitLength() < Long.SIZE;
+    }
+}
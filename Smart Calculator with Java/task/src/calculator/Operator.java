@@ -0,0 +1,17 @@
+package calculator;
+
+class Operator extends Element {
+    final int priority;
+    final String symbol;
+
+    Operator(Type type, int priority, char symbol) {
+        super(type);
+        this.priority = priority;
+        this.symbol = String.valueOf(symbol);
+    }
+
+    @Override
+    public String toString() {
+        return symbol;
+    }
+}
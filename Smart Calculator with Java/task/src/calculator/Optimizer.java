@@ -0,0 +1,199 @@
+package calculator;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class Optimizer {
+
+    private final List<Element> output;
+    // the value of 1: 10^scale in fixed-point mode
+    private final BigInteger one;
+    private int[] starts;
+    private BigInteger[] constants;
+    // base and exponent of a constant power that is not folded yet, so that a % that follows can
+    // fold x ^ y % m without computing x ^ y
+    private BigInteger[] bases;
+    private BigInteger[] exponents;
+    private int top = -1;
+
+    private Optimizer(int size, BigInteger one) {
+        output = new ArrayList<>(size);
+        this.one = one;
+        starts = new int[16];
+        constants = new BigInteger[16];
+        bases = new BigInteger[16];
+        exponents = new BigInteger[16];
+    }
+
+    // Folds constant subtrees and drops +0, -0, *1, /1, ^1, unary plus and double negation.
+    // A division by a constant zero or a power that is too large is left in place, so it still
+    // fails when evaluated.
+    static List<Element> optimize(List<Element> postfix) {
+        return optimize(postfix, 0);
+    }
+
+    // Numbers in postfix are scaled by 10^scale, see FixedPoint.
+    static List<Element> optimize(List<Element> postfix, int scale) {
+        Optimizer optimizer = new Optimizer(postfix.size(), FixedPoint.factor(scale));
+        for (Element element : postfix) {
+            switch (element.type) {
+                case NUMBER -> optimizer.push(element, ((Number) element).number);
+                case VARIABLE -> optimizer.push(element, null);
+                case UNARY_OPERATOR -> optimizer.unary((UnaryOperator) element);
+                case BINARY_OPERATOR -> optimizer.binary((BinaryOperator) element);
+                default -> throw new IllegalArgumentException("Unexpected element " + element);
+            }
+        }
+        if (optimizer.top >= 0) {
+            optimizer.fold(optimizer.top);
+        }
+        return optimizer.output;
+    }
+
+    private void push(Element element, BigInteger constant) {
+        push(output.size(), constant);
+        output.add(element);
+    }
+
+    private void push(int start, BigInteger constant) {
+        if (++top == starts.length) {
+            starts = Arrays.copyOf(starts, top * 2);
+            constants = Arrays.copyOf(constants, top * 2);
+            bases = Arrays.copyOf(bases, top * 2);
+            exponents = Arrays.copyOf(exponents, top * 2);
+        }
+        starts[top] = start;
+        constants[top] = constant;
+        bases[top] = null;
+        exponents[top] = null;
+    }
+
+    // Folds the constant power left pending at index, if any.
+    private void fold(int index) {
+        BigInteger base = bases[index];
+        if (base == null) {
+            return;
+        }
+        bases[index] = null;
+        BigInteger result = fold(Operation.POWER, base, exponents[index]);
+        if (result != null) {
+            List<Element> power = output.subList(starts[index], index == top ? output.size() : starts[index + 1]);
+            int removed = power.size() - 1;
+            power.clear();
+            power.add(new Number(Type.NUMBER, result));
+            for (int i = index + 1; i <= top; i++) {
+                starts[i] -= removed;
+            }
+            constants[index] = result;
+        }
+    }
+
+    private void unary(UnaryOperator operator) {
+        if (operator.operation == Operation.PLUS) {
+            return;
+        }
+        fold(top);
+        int last = output.size() - 1;
+        if (constants[top] != null) {
+            constants[top] = constants[top].negate();
+            output.set(last, new Number(Type.NUMBER, constants[top]));
+        } else if (output.get(last) instanceof UnaryOperator inner && inner.operation == operator.operation) {
+            output.remove(last);
+        } else {
+            output.add(operator);
+        }
+    }
+
+    private void binary(BinaryOperator operator) {
+        if (operator.operation == Operation.REMAINDER && bases[top - 1] != null && foldPowerMod()) {
+            return;
+        }
+        fold(top);
+        fold(top - 1);
+        BigInteger y = constants[top];
+        int yStart = starts[top--];
+        BigInteger x = constants[top];
+        int xStart = starts[top];
+        Operation operation = operator.operation;
+
+        if (operation == Operation.POWER && x != null && y != null) {
+            // folded once it is known whether a % follows
+            output.add(operator);
+            constants[top] = null;
+            bases[top] = x;
+            exponents[top] = y;
+            return;
+        }
+        BigInteger result = x != null && y != null ? fold(operation, x, y) : null;
+        if (result != null) {
+            truncate(xStart);
+            top--;
+            push(new Number(Type.NUMBER, result), result);
+        } else if (isIdentity(operation, y, false)) {
+            truncate(yStart);
+        } else if (isIdentity(operation, x, true)) {
+            output.subList(xStart, yStart).clear();
+            constants[top] = null;
+        } else if (operation == Operation.SUBTRACT && x != null && x.signum() == 0) {
+            output.subList(xStart, yStart).clear();
+            constants[top] = null;
+            unary(new UnaryOperator(Type.UNARY_OPERATOR, 4, Operation.NEGATE, '-'));
+        } else {
+            output.add(operator);
+            constants[top] = null;
+        }
+    }
+
+    // x ^ y % m with a pending constant power and a constant m, as Program.POWER_MOD computes it;
+    // only on the integers, since fixed-point powers are not fused.
+    private boolean foldPowerMod() {
+        fold(top);
+        BigInteger m = constants[top];
+        BigInteger x = bases[top - 1];
+        BigInteger y = exponents[top - 1];
+        if (m == null || m.signum() == 0 || !one.equals(BigInteger.ONE) || x.signum() == 0 && y.signum() < 0) {
+            return false;
+        }
+        BigInteger result;
+        try {
+            result = Operation.powerMod(x, y, m);
+        } catch (CalculatorException e) {
+            return false;
+        }
+        truncate(starts[top - 1]);
+        top -= 2;
+        push(new Number(Type.NUMBER, result), result);
+        return true;
+    }
+
+    private BigInteger fold(Operation operation, BigInteger x, BigInteger y) {
+        if ((operation == Operation.DIVIDE || operation == Operation.REMAINDER) && y.signum() == 0
+                || operation == Operation.POWER && x.signum() == 0 && y.signum() < 0) {
+            return null;
+        }
+        try {
+            return FixedPoint.apply(operation, x, y, one);
+        } catch (CalculatorException e) {
+            return null;
+        }
+    }
+
+    private boolean isIdentity(Operation operation, BigInteger constant, boolean left) {
+        if (constant == null) {
+            return false;
+        }
+        return switch (operation) {
+            case ADD -> constant.signum() == 0;
+            case SUBTRACT -> !left && constant.signum() == 0;
+            case MULTIPLY -> constant.equals(one);
+            case DIVIDE, POWER -> !left && constant.equals(one);
+            default -> false;
+        };
+    }
+
+    private void truncate(int size) {
+        output.subList(size, output.size()).clear();
+    }
+}
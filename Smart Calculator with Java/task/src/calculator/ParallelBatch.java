@@ -0,0 +1,194 @@
+package calculator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+class ParallelBatch {
+
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int MIN_TASK_SIZE = 1 << 10;
+
+    private final Session session;
+    private final String[] inputs = new String[CHUNK_SIZE];
+    private final String[] outputs = new String[CHUNK_SIZE];
+    private final Program[] programs = new Program[CHUNK_SIZE];
+    private final Bindings[] bindings = new Bindings[CHUNK_SIZE];
+    // The first line of the chunk that threw an ArithmeticException. Batch stops at such a line, so
+    // the chunk is written up to it and the exception is thrown again.
+    private int failedLine;
+    private ArithmeticException failure;
+
+    ParallelBatch(Session session) {
+        this.session = session;
+    }
+
+    void run(Path in, Path out) throws IOException {
+        long start = System.nanoTime();
+        long lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(in, StandardCharsets.UTF_8);
+             Writer writer = Batch.open(out)) {
+            boolean exit = false;
+            while (!exit) {
+                int count = 0;
+                String input;
+                while (count < CHUNK_SIZE && (input = reader.readLine()) != null) {
+                    lines++;
+                    inputs[count++] = input;
+                    if (input.equals("/exit")) {
+                        exit = true;
+                        break;
+                    }
+                }
+                if (count == 0) {
+                    break;
+                } else if (Metrics.ENABLED) {
+                    Metrics.lines(count);
+                }
+                failedLine = count;
+                failure = null;
+                parallel(0, count, this::compile);
+                // lines from evaluated on are resolved but not evaluated yet
+                int evaluated = 0;
+                boolean divides = false;
+                for (int i = 0; i < count && i < failedLine; i++) {
+                    if (divides && programs[i] == null && outputs[i] == null && !inputs[i].isBlank()) {
+                        // an earlier line may still divide by zero, and Batch would stop there
+                        // before this line assigned or ran anything
+                        parallel(evaluated, i, this::evaluate);
+                        evaluated = i;
+                        divides = false;
+                        if (i >= failedLine) {
+                            break;
+                        }
+                    }
+                    try {
+                        resolve(i);
+                    } catch (ArithmeticException e) {
+                        failed(i, e);
+                    }
+                    divides |= programs[i] != null && programs[i].mayDivideByZero();
+                }
+                parallel(evaluated, failedLine, this::evaluate);
+                for (int i = 0; i < failedLine; i++) {
+                    if (outputs[i] != null) {
+                        writer.write(outputs[i]);
+                        writer.write(System.lineSeparator());
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                exit |= count < CHUNK_SIZE;
+            }
+        }
+        Batch.report(lines, System.nanoTime() - start);
+    }
+
+    // Expressions without '=' do not depend on earlier lines, so they can be compiled in any order.
+    private void compile(int from, int to) {
+        for (int i = from; i < to; i++) {
+            String input = inputs[i];
+            outputs[i] = null;
+            programs[i] = null;
+            bindings[i] = null;
+            if (input.equals("/exit")) {
+                outputs[i] = "Bye!";
+            } else if (!input.isBlank() && !input.startsWith("/") && input.indexOf('=') < 0) {
+                try {
+                    programs[i] = session.calculator().compile(input).program();
+                } catch (CalculatorException e) {
+                    fail(i, e.code());
+                } catch (ArithmeticException e) {
+                    failed(i, e);
+                }
+            }
+        }
+    }
+
+    // Runs the sequential part of a line: assignments and commands are executed and the variables
+    // read by an expression are captured, so the remaining evaluation no longer depends on order.
+    // The caller evaluates the lines before an assignment or a command first when one of them may
+    // divide by zero.
+    private void resolve(int index) {
+        String input = inputs[index];
+        if (outputs[index] != null || input.isBlank()) {
+            return;
+        } else if (input.startsWith("/")) {
+            outputs[index] = Main.respond(session, input);
+            return;
+        }
+        try {
+            Program program = programs[index];
+            // compiled before the assignments of the chunk interned the names it reads
+            if (program == null || !program.isResolved()) {
+                CompiledExpression expression = session.prepare(input);
+                if (expression == null) {
+                    return;
+                }
+                program = expression.program();
+                programs[index] = program;
+            }
+            Bindings arguments = new Bindings(program.slots.length);
+            if (Machine.bind(program, session.environment(), arguments) < 0) {
+                bindings[index] = arguments;
+            } else {
+                programs[index] = null;
+                fail(index, ErrorCode.UNKNOWN_VARIABLE);
+            }
+        } catch (CalculatorException e) {
+            programs[index] = null;
+            fail(index, e.code());
+        }
+    }
+
+    private void evaluate(int from, int to) {
+        Machine machine = new Machine();
+        int scale = session.calculator().scale();
+        for (int i = from; i < to; i++) {
+            if (programs[i] != null) {
+                try {
+                    machine.execute(programs[i], bindings[i]);
+                    outputs[i] = machine.fitsLong() && scale == 0 ? Long.toString(machine.longResult())
+                            : FixedPoint.toString(Operation.printable(machine.bigResult()), scale);
+                } catch (CalculatorException e) {
+                    fail(i, e.code());
+                } catch (ArithmeticException e) {
+                    failed(i, e);
+                }
+            }
+        }
+    }
+
+    private synchronized void failed(int index, ArithmeticException e) {
+        if (index < failedLine) {
+            failedLine = index;
+            failure = e;
+        }
+    }
+
+    private void fail(int index, ErrorCode error) {
+        if (Metrics.ENABLED) {
+            Metrics.error(error.message());
+        }
+        outputs[index] = error.message();
+    }
+
+    private interface Task {
+        void run(int from, int to);
+    }
+
+    private static void parallel(int from, int to, Task task) {
+        int count = to - from;
+        if (count <= 0) {
+            return;
+        }
+        int tasks = Math.max(1, Math.min(count / MIN_TASK_SIZE, Runtime.getRuntime().availableProcessors() * 4));
+        IntStream.range(0, tasks).parallel().forEach(part -> task.run(
+                from + (int) ((long) count * part / tasks), from + (int) ((long) count * (part + 1) / tasks)));
+    }
+}
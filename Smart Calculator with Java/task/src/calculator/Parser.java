@@ -0,0 +1,190 @@
+package calculator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+class Parser {
+
+    private final List<Element> infix = new ArrayList<>();
+
+    private final Lexer lexer;
+    // where parseInput found the input invalid
+    private int errorOffset = -1;
+
+    // With a scale, numbers may be decimals and are read as value * 10^scale.
+    Parser(CharSequence input, int scale) {
+        this.lexer = new Lexer(input, 0, input.length(), scale);
+    }
+
+    static List<Element> compile(CharSequence input) throws CalculatorException {
+        return compile(input, 0);
+    }
+
+    static List<Element> compile(CharSequence input, int scale) throws CalculatorException {
+        return convertToPostfix(parse(input, scale));
+    }
+
+    static List<Element> parse(CharSequence input) throws CalculatorException {
+        return parse(input, 0);
+    }
+
+    static List<Element> parse(CharSequence input, int scale) throws CalculatorException {
+        Parser parser = new Parser(input, scale);
+        if (!parser.parseInput()) {
+            throw new CalculatorException(ErrorCode.INVALID_EXPRESSION, parser.errorOffset());
+        }
+        return parser.infix;
+    }
+
+    // Reads the input into infix() and returns true, or returns false with errorOffset() set.
+    // Parentheses are matched here, so convertToPostfix cannot fail on the result.
+    boolean parseInput() {
+        Type currentType = Type.BINARY_OPERATOR;
+        int depth = 0;
+        Lexer.Token token;
+        while ((token = lexer.next()) != Lexer.Token.END) {
+            switch (token) {
+                case NUMBER -> {
+                    if (isOperand(currentType)) {
+                        return fail();
+                    }
+                    currentType = Type.NUMBER;
+                    infix.add(new Number(currentType, lexer.bigValue()));
+                }
+                case IDENTIFIER -> {
+                    if (isOperand(currentType)) {
+                        return fail();
+                    }
+                    currentType = Type.VARIABLE;
+                    infix.add(new Variable(currentType, lexer.text()));
+                }
+                case OPERATOR -> {
+                    char ch = lexer.symbol();
+                    if (isOperand(currentType)) {
+                        currentType = Type.BINARY_OPERATOR;
+                        int priority = 0;
+                        Operation operation = null;
+                        switch (ch) {
+                            case '+' -> {
+                                operation = Operation.ADD;
+                                priority = 1;
+                            }
+                            case '-' -> {
+                                operation = Operation.SUBTRACT;
+                                priority = 1;
+                            }
+                            case '*' -> {
+                                operation = Operation.MULTIPLY;
+                                priority = 2;
+                            }
+                            case '/' -> {
+                                operation = Operation.DIVIDE;
+                                priority = 2;
+                            }
+                            case '%' -> {
+                                operation = Operation.REMAINDER;
+                                priority = 2;
+                            }
+                            case '^' -> {
+                                operation = Operation.POWER;
+                                priority = 3;
+                            }
+                        }
+                        infix.add(new BinaryOperator(currentType, priority, operation, ch));
+                    } else {
+                        currentType = Type.UNARY_OPERATOR;
+                        if (ch != '+' && ch != '-') {
+                            return fail();
+                        }
+                        Operation operation = ch == '+' ? Operation.PLUS : Operation.NEGATE;
+                        infix.add(new UnaryOperator(currentType, 4, operation, ch));
+                    }
+                }
+                case LEFT_PARENTHESIS -> {
+                    if (isOperand(currentType)) {
+                        return fail();
+                    }
+                    depth++;
+                    currentType = Type.LEFT_PARENTHESIS;
+                    infix.add(new Operator(currentType, 0, lexer.symbol()));
+                }
+                case RIGHT_PARENTHESIS -> {
+                    if (!isOperand(currentType) || depth-- == 0) {
+                        return fail();
+                    }
+                    currentType = Type.RIGHT_PARENTHESIS;
+                    infix.add(new Operator(currentType, 0, lexer.symbol()));
+                }
+                default -> {
+                    return fail();
+                }
+            }
+        }
+        // at the end of the input: an operand is missing or a parenthesis is not closed
+        return isOperand(currentType) && depth == 0 || fail();
+    }
+
+    private boolean fail() {
+        errorOffset = lexer.start();
+        return false;
+    }
+
+    List<Element> infix() {
+        return infix;
+    }
+
+    int errorOffset() {
+        return errorOffset;
+    }
+
+    private static boolean isOperand(Type type) {
+        return type == Type.NUMBER || type == Type.VARIABLE || type == Type.RIGHT_PARENTHESIS;
+    }
+
+    static List<Element> convertToPostfix(List<Element> infix) throws CalculatorException {
+        List<Element> postfix = new ArrayList<>();
+        Deque<Element> stack = new ArrayDeque<>();
+        for (Element element : infix) {
+            switch (element.type) {
+                case VARIABLE, NUMBER -> {
+                    postfix.add(element);
+                    while (!stack.isEmpty() && stack.peek().type == Type.UNARY_OPERATOR) {
+                        postfix.add(stack.pop());
+                    }
+                }
+                case BINARY_OPERATOR -> {
+                    int priority = ((Operator) element).priority;
+                    if (((BinaryOperator) element).operation.isRightAssociative()) {
+                        priority++;
+                    }
+                    while (!stack.isEmpty() && ((Operator) stack.peek()).priority >= priority) {
+                        postfix.add(stack.pop());
+                    }
+                    stack.push(element);
+                }
+                case UNARY_OPERATOR, LEFT_PARENTHESIS -> stack.push(element);
+                case RIGHT_PARENTHESIS -> {
+                    while (!(stack.isEmpty() || stack.peek().type == Type.LEFT_PARENTHESIS)) {
+                        postfix.add(stack.pop());
+                    }
+                    if (stack.isEmpty() || stack.peek().type != Type.LEFT_PARENTHESIS) {
+                        throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+                    } else {
+                        stack.pop();
+                    }
+                }
+            }
+        }
+        while (!stack.isEmpty()) {
+            Element element = stack.pop();
+            if (element.type == Type.LEFT_PARENTHESIS || element.type == Type.RIGHT_PARENTHESIS) {
+                throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+            } else {
+                postfix.add(element);
+            }
+        }
+        return postfix;
+    }
+}
@@ -0,0 +1,210 @@
+package calculator;
+
+import java.math.BigInteger;
+import java.util.List;
+
+final class Program {
+
+    static final int PUSH = 0;
+    static final int PUSH_BIG = 1;
+    static final int LOAD = 2;
+    static final int ADD = 3;
+    static final int SUBTRACT = 4;
+    static final int MULTIPLY = 5;
+    static final int DIVIDE = 6;
+    static final int NEGATE = 7;
+    static final int REMAINDER = 8;
+    static final int POWER = 9;
+    static final int POWER_MOD = 10;
+    // copy the top of the stack to a temporary, push a temporary
+    static final int SAVE = 11;
+    static final int RESTORE = 12;
+    // MEMO m target pushes the value memo m remembered and jumps to target if it is still valid,
+    // REMEMBER m stores the top of the stack in memo m
+    static final int MEMO = 13;
+    static final int REMEMBER = 14;
+    // fixed-point *, / and ^, with 10^scale as a third operand
+    static final int MULTIPLY_SCALED = 15;
+    static final int DIVIDE_SCALED = 16;
+    static final int POWER_SCALED = 17;
+
+    private static final int JIT_THRESHOLD = Integer.getInteger("calculator.jit.threshold", 1000);
+    private static final int MAX_DEOPTIMIZATIONS = 100;
+
+    private static final String[] MNEMONICS = {"", "", "", "+", "-", "*", "/", "~", "%", "^", "^%", "", "", "[", "]", "*.", "/.", "^."};
+
+    final int[] code;
+    final long[] constants;
+    final BigInteger[] bigConstants;
+    final String[] names;
+    // symbol table slot of each name, in LOAD operand order, or a negative number for a name that
+    // had no slot when the program was assembled
+    final int[] slots;
+    final int maxStack;
+    final int temps;
+    // SubexpressionTable id of each memoized subtree, and the slots of the variables it reads
+    final int[] memoIds;
+    final int[][] memoSlots;
+
+    private int invocations;
+    private int deoptimizations;
+    private volatile LongExpression compiled;
+    private volatile boolean interpretOnly = JIT_THRESHOLD < 0;
+
+    Program(int[] code, long[] constants, BigInteger[] bigConstants, String[] names, int[] slots, int temps,
+            int[] memoIds, int[][] memoSlots) {
+        this.code = code;
+        this.constants = constants;
+        this.bigConstants = bigConstants;
+        this.names = names;
+        this.slots = slots;
+        this.maxStack = maxStack(code);
+        this.temps = temps;
+        this.memoIds = memoIds;
+        this.memoSlots = memoSlots;
+    }
+
+    static Program assemble(List<Element> postfix, SymbolTable symbols) throws CalculatorException {
+        return Assembler.assemble(postfix, symbols, null, 0);
+    }
+
+    static Program assemble(List<Element> postfix, SymbolTable symbols, SubexpressionTable subexpressions, int scale)
+            throws CalculatorException {
+        return Assembler.assemble(postfix, symbols, subexpressions, scale);
+    }
+
+    // Whether every name had a slot; otherwise the slots are looked up on every run.
+    boolean isResolved() {
+        for (int slot : slots) {
+            if (slot < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The slot of the name at index, which may have been interned since the program was assembled.
+    int slot(int index, SymbolTable symbols) {
+        int slot = slots[index];
+        return slot >= 0 ? slot : symbols.lookup(names[index]);
+    }
+
+    // Whether evaluating can throw ArithmeticException: a / or % by zero, or 0 raised to a negative
+    // power.
+    boolean mayDivideByZero() {
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case PUSH, PUSH_BIG, LOAD, RESTORE, SAVE, REMEMBER -> pc++;
+                case MEMO -> pc += 2;
+                case DIVIDE, REMAINDER, POWER, POWER_MOD, DIVIDE_SCALED, POWER_SCALED -> {
+                    return true;
+                }
+                default -> {
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int maxStack(int[] code) {
+        int depth = 0;
+        int maxStack = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case PUSH, PUSH_BIG, LOAD, RESTORE -> {
+                    depth++;
+                    pc++;
+                }
+                case SAVE, REMEMBER -> pc++;
+                case MEMO -> pc += 2;
+                case NEGATE -> {
+                }
+                case POWER_MOD, MULTIPLY_SCALED, DIVIDE_SCALED, POWER_SCALED -> depth -= 2;
+                default -> depth--;
+            }
+            maxStack = Math.max(maxStack, depth);
+        }
+        return maxStack;
+    }
+
+    LongExpression compiled() {
+        LongExpression compiled = this.compiled;
+        if (compiled == null && !interpretOnly && ++invocations > JIT_THRESHOLD) {
+            compiled = tierUp();
+        }
+        return compiled;
+    }
+
+    private synchronized LongExpression tierUp() {
+        if (compiled == null && !interpretOnly) {
+            compiled = ExpressionCompiler.compile(this);
+            interpretOnly = compiled == null;
+        }
+        return compiled;
+    }
+
+    // Called when compiled code had to fall back to the interpreter; expressions that keep
+    // overflowing are left to the interpreter for good.
+    void deoptimize() {
+        if (Metrics.ENABLED) {
+            Metrics.deoptimized();
+        }
+        if (++deoptimizations > MAX_DEOPTIMIZATIONS) {
+            interpretOnly = true;
+            compiled = null;
+        }
+    }
+
+    static int opcode(Operation operation) {
+        return switch (operation) {
+            case ADD -> ADD;
+            case SUBTRACT -> SUBTRACT;
+            case MULTIPLY -> MULTIPLY;
+            case DIVIDE -> DIVIDE;
+            case REMAINDER -> REMAINDER;
+            case POWER -> POWER;
+            case NEGATE -> NEGATE;
+            default -> throw new IllegalArgumentException(String.valueOf(operation));
+        };
+    }
+
+    static Operation operation(int opcode) {
+        return switch (opcode) {
+            case ADD -> Operation.ADD;
+            case SUBTRACT -> Operation.SUBTRACT;
+            case MULTIPLY -> Operation.MULTIPLY;
+            case DIVIDE -> Operation.DIVIDE;
+            case REMAINDER -> Operation.REMAINDER;
+            case POWER -> Operation.POWER;
+            case NEGATE -> Operation.NEGATE;
+            default -> throw new IllegalArgumentException(String.valueOf(opcode));
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc++) {
+            if (!builder.isEmpty()) {
+                builder.append(' ');
+            }
+            switch (code[pc]) {
+                case PUSH -> builder.append(constants[code[++pc]]);
+                case PUSH_BIG -> builder.append(bigConstants[code[++pc]]);
+                case LOAD -> builder.append(names[code[++pc]]);
+                case SAVE -> builder.append("->t").append(code[++pc]);
+                case RESTORE -> builder.append('t').append(code[++pc]);
+                case MEMO -> {
+                    builder.append(MNEMONICS[MEMO]);
+                    pc += 2;
+                }
+                case REMEMBER -> {
+                    builder.append(MNEMONICS[REMEMBER]);
+                    pc++;
+                }
+                default -> builder.append(MNEMONICS[code[pc]]);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package calculator;
+
+import java.math.BigInteger;
+
+// What a line evaluates to: a value, nothing (an assignment or a definition), or an error code with
+// the offset of the character where the line went wrong, -1 when the error has no position, such
+// as a result that is too large.
+public final class Result {
+
+    static final Result NONE = new Result(null, null, -1);
+
+    private final BigInteger value;
+    private final ErrorCode error;
+    private final int offset;
+
+    private Result(BigInteger value, ErrorCode error, int offset) {
+        this.value = value;
+        this.error = error;
+        this.offset = offset;
+    }
+
+    static Result of(BigInteger value) {
+        return new Result(value, null, -1);
+    }
+
+    static Result error(ErrorCode error, int offset) {
+        return new Result(null, error, offset);
+    }
+
+    public boolean isError() {
+        return error != null;
+    }
+
+    // The value, or null for an error or a line without one.
+    public BigInteger value() {
+        return value;
+    }
+
+    public ErrorCode error() {
+        return error;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return error != null ? error.message() + " at " + offset : String.valueOf(value);
+    }
+}
@@ -0,0 +1,50 @@
+package calculator;
+
+import java.math.BigInteger;
+
+// The results of one expression over many rows; a row whose result does not fit in a long keeps
+// it as a BigInteger, and a row that fails, say on a division by zero, keeps its error code.
+public final class ResultColumn {
+
+    private final long[] values;
+    private final BigInteger[] bigs;
+    private final ErrorCode[] errors;
+
+    ResultColumn(long[] values, BigInteger[] bigs, ErrorCode[] errors) {
+        this.values = values;
+        this.bigs = bigs;
+        this.errors = errors;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public boolean isError(int row) {
+        return errors != null && errors[row] != null;
+    }
+
+    // The error of row, or null when it has a result.
+    public ErrorCode error(int row) {
+        return errors == null ? null : errors[row];
+    }
+
+    public boolean fitsLong(int row) {
+        return !isError(row) && (bigs == null || bigs[row] == null);
+    }
+
+    // The result of row as a long; throws ArithmeticException when it does not fit or row failed.
+    public long longValue(int row) {
+        if (isError(row)) {
+            throw new ArithmeticException(errors[row].message());
+        } else if (!fitsLong(row)) {
+            throw new ArithmeticException("long overflow");
+        }
+        return values[row];
+    }
+
+    // The result of row, or null when row failed.
+    public BigInteger get(int row) {
+        return isError(row) ? null : fitsLong(row) ? BigInteger.valueOf(values[row]) : bigs[row];
+    }
+}
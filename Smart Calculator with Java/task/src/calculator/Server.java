@@ -0,0 +1,306 @@
+package calculator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Line protocol over TCP: every line a client sends gets exactly one line back, empty for
+// assignments and blank lines, so clients may pipeline requests and match replies by order.
+// Each connection has its own session; all of them share one calculator and its expression cache.
+// Connections are spread over one selector loop per core, and a loop stops reading from a
+// connection whose replies pile up until the client catches up. Lines are evaluated on worker
+// threads, one batch per connection at a time, so a slow line only holds up its own connection.
+class Server {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int HIGH_WATER = 1 << 20;
+    private static final int MAX_LINE = Integer.getInteger("calculator.server.maxLine", 16 << 20);
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final Calculator calculator;
+    private final int port;
+    // at most one task per connection, so at most as many threads as busy connections
+    private final ExecutorService workers = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "server-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    Server(Calculator calculator, int port) {
+        this.calculator = calculator;
+        this.port = port;
+    }
+
+    void run() throws IOException {
+        EventLoop[] loops = new EventLoop[Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop();
+            Thread thread = new Thread(loops[i], "server-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            System.err.println("Listening on port " + ((InetSocketAddress) server.getLocalAddress()).getPort());
+            for (int next = 0; ; next = (next + 1) % loops.length) {
+                SocketChannel channel = server.accept();
+                channel.socket().setTcpNoDelay(true);
+                loops[next].register(channel);
+            }
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+        // connections whose worker is done
+        private final Queue<SelectionKey> answered = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        EventLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        void register(SocketChannel channel) {
+            registrations.add(channel);
+            selector.wakeup();
+        }
+
+        void answered(SelectionKey key) {
+            answered.add(key);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    System.err.println("Selector failed: " + e.getMessage());
+                    return;
+                }
+                SocketChannel channel;
+                while ((channel = registrations.poll()) != null) {
+                    try {
+                        channel.configureBlocking(false);
+                        channel.register(selector, SelectionKey.OP_READ, new Connection(calculator.newSession(), this));
+                    } catch (IOException e) {
+                        close(channel);
+                    }
+                }
+                SelectionKey done;
+                while ((done = answered.poll()) != null) {
+                    try {
+                        ((Connection) done.attachment()).answered(done);
+                    } catch (IOException | RuntimeException e) {
+                        done.cancel();
+                        close(done.channel());
+                    }
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write(key);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read(key, input);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        key.cancel();
+                        close(key.channel());
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        }
+    }
+
+    private final class Connection {
+
+        private final Session session;
+        private final EventLoop loop;
+        // bytes received but not yet handled: a partial line, or whole lines held back while the
+        // client is not reading its replies
+        private byte[] pending = new byte[256];
+        private int pendingSize;
+        private ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+        private boolean exit;
+        // Set while a worker answers lines. The worker then owns pending, output and the session,
+        // and the loop neither reads nor writes until it gets the connection back in answered.
+        private boolean busy;
+        // pending may hold a complete line, or one that is too long
+        private boolean complete;
+        private boolean held;
+        private RuntimeException failure;
+
+        Connection(Session session, EventLoop loop) {
+            this.session = session;
+            this.loop = loop;
+        }
+
+        void read(SelectionKey key, ByteBuffer input) throws IOException {
+            if (busy) {
+                return;
+            }
+            SocketChannel channel = (SocketChannel) key.channel();
+            input.clear();
+            int read = channel.read(input);
+            if (read < 0) {
+                key.cancel();
+                close(channel);
+                return;
+            }
+            input.flip();
+            if (pendingSize + input.remaining() > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingSize + input.remaining()));
+            }
+            for (int i = 0; i < read && !complete; i++) {
+                complete = input.get(i) == '\n';
+            }
+            input.get(pending, pendingSize, input.remaining());
+            pendingSize += read;
+            complete |= pendingSize > MAX_LINE;
+            handle(key);
+        }
+
+        void write(SelectionKey key) throws IOException {
+            if (busy) {
+                return;
+            }
+            flush(key);
+            if (output.position() == 0 && !exit) {
+                handle(key);
+            }
+        }
+
+        // Hands the complete lines to a worker, or just sends what is queued.
+        private void handle(SelectionKey key) throws IOException {
+            if (!complete || exit) {
+                flush(key);
+                return;
+            }
+            busy = true;
+            key.interestOps(0);
+            workers.execute(() -> {
+                try {
+                    held = answer();
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                loop.answered(key);
+            });
+        }
+
+        void answered(SelectionKey key) throws IOException {
+            busy = false;
+            complete = held;
+            if (failure != null) {
+                throw failure;
+            }
+            flush(key);
+            // when the replies went out at once no event comes for the lines held back, so they
+            // are answered now
+            if (held && output.position() == 0 && !exit) {
+                handle(key);
+            }
+        }
+
+        // Answers the complete lines in pending; returns true when it stopped at HIGH_WATER with
+        // bytes left.
+        private boolean answer() {
+            int start = 0;
+            int i = 0;
+            for (; i < pendingSize && output.position() < HIGH_WATER && !exit; i++) {
+                if (pending[i] == '\n') {
+                    int end = i > start && pending[i - 1] == '\r' ? i - 1 : i;
+                    respond(new String(pending, start, end - start, StandardCharsets.UTF_8));
+                    start = i + 1;
+                }
+            }
+            boolean held = i < pendingSize;
+            if (!held && i - start > MAX_LINE && !exit) {
+                respond(null);
+            }
+            System.arraycopy(pending, start, pending, 0, pendingSize - start);
+            pendingSize -= start;
+            return held;
+        }
+
+        private void respond(String line) {
+            if (Metrics.ENABLED) {
+                Metrics.lines(1);
+            }
+            String reply;
+            if (line == null) {
+                reply = "Line too long";
+                exit = true;
+            } else if (line.equals("/exit")) {
+                reply = "Bye!";
+                exit = true;
+            } else if (line.startsWith("/save ") || line.startsWith("/load ")) {
+                // clients must not read or write files on the server
+                reply = "Unknown command";
+            } else {
+                try {
+                    reply = Main.respond(session, line);
+                } catch (ArithmeticException e) {
+                    // the REPL lets a division by zero end the program; a server answers it instead
+                    reply = ErrorCode.DIVISION_BY_ZERO.message();
+                    if (Metrics.ENABLED) {
+                        Metrics.error(reply);
+                    }
+                }
+            }
+            // keep one reply line per request line, even for multi-line replies such as /stats
+            byte[] bytes = reply == null ? new byte[0] : reply.replace("\n", "; ").getBytes(StandardCharsets.UTF_8);
+            if (output.remaining() < bytes.length + 1) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + bytes.length + 1));
+                grown.put(output.flip());
+                output = grown;
+            }
+            output.put(bytes).put(NEWLINE);
+        }
+
+        // Writes what the socket accepts; reading pauses while replies are queued and resumes once
+        // they are sent.
+        private void flush(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            output.flip();
+            channel.write(output);
+            output.compact();
+            if (output.position() > 0) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (exit) {
+                key.cancel();
+                close(channel);
+            } else {
+                if (output.capacity() > BUFFER_SIZE) {
+                    output = ByteBuffer.allocate(BUFFER_SIZE);
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private static void close(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package calculator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+
+public final class Session {
+
+    private final Calculator calculator;
+    private final Environment environment;
+
+    Session(Calculator calculator, Environment environment) {
+        this.calculator = calculator;
+        this.environment = environment;
+    }
+
+    public BigInteger execute(CharSequence input) throws CalculatorException {
+        Result result = run(input);
+        if (result.isError()) {
+            throw new CalculatorException(result.error(), result.offset());
+        }
+        return result.value();
+    }
+
+    // Like execute, but an invalid line is an error Result with the offset in input of where it
+    // went wrong, so rejecting a line costs no more than accepting one.
+    public Result run(CharSequence input) {
+        Result assigned = assign(input);
+        return assigned != null ? assigned : run(input, 0, calculator.prepare(input));
+    }
+
+    // Runs expression, the text of input from start, whose offsets are in the stripped expression.
+    private Result run(CharSequence input, int start, CompiledExpression expression) {
+        Result result = expression.run(environment);
+        return result.offset() < 0 ? result : error(input, start, result.error(), result.offset());
+    }
+
+    private static Result error(CharSequence input, int start, ErrorCode error, int offset) {
+        return Result.error(error, offset < 0 ? offset
+                : start + Lexer.rawOffset(input.subSequence(start, input.length()), offset));
+    }
+
+    // Evaluates a single expression, with no assignments or commands, as it is read, so its length
+    // is not limited by memory.
+    public BigInteger evaluate(Reader reader) throws IOException, CalculatorException {
+        return new StreamingEvaluator(environment).evaluate(reader);
+    }
+
+    // The expression on the line, or null for an assignment or a definition, which is done.
+    CompiledExpression prepare(CharSequence input) throws CalculatorException {
+        Result assigned = assign(input);
+        if (assigned == null) {
+            return calculator.compile(input);
+        } else if (assigned.isError()) {
+            throw new CalculatorException(assigned.error(), assigned.offset());
+        }
+        return null;
+    }
+
+    Calculator calculator() {
+        return calculator;
+    }
+
+    public Environment environment() {
+        return environment;
+    }
+
+    // Null when input is no assignment, else Result.NONE once it is done, or the error.
+    private Result assign(CharSequence input) {
+        int length = input.length();
+        for (int i = 1; i < length; i++) {
+            if (input.charAt(i) == '=' && input.charAt(i - 1) == ':') {
+                return define(input, i - 1);
+            }
+        }
+
+        int first = -1;
+        int second = length;
+        int segments = 0;
+        int lastNonEmpty = -1;
+        for (int i = 0; i < length; i++) {
+            char ch = input.charAt(i);
+            if (ch == '=') {
+                segments++;
+                if (first < 0) {
+                    first = i;
+                } else if (second == length) {
+                    second = i;
+                }
+            } else if (!Lexer.isWhitespace(ch)) {
+                lastNonEmpty = segments;
+            }
+        }
+        if (lastNonEmpty > 1) {
+            return Result.error(ErrorCode.INVALID_ASSIGNMENT, second);
+        } else if (lastNonEmpty < 1) {
+            return null;
+        }
+
+        Lexer lexer = new Lexer(input, 0, first);
+        if (lexer.next() != Lexer.Token.IDENTIFIER || !isLatin(input, lexer.start(), lexer.end())
+                || lexer.next() != Lexer.Token.END) {
+            return Result.error(ErrorCode.INVALID_IDENTIFIER, lexer.start());
+        }
+        String variable = Lexer.strip(input, 0, first);
+
+        lexer = new Lexer(input, first + 1, second, calculator.scale());
+        Lexer.Token token = lexer.next();
+        if (token == Lexer.Token.OPERATOR && (lexer.symbol() == '-' || lexer.symbol() == '+')) {
+            boolean negative = lexer.symbol() == '-';
+            if (lexer.next() != Lexer.Token.NUMBER || !isDecimal(input, lexer.start(), lexer.end())) {
+                return Result.error(ErrorCode.INVALID_ASSIGNMENT, lexer.start());
+            }
+            BigInteger value = lexer.bigValue();
+            token = lexer.next();
+            value = negative ? value.negate() : value;
+            if (token == Lexer.Token.END) {
+                environment.set(variable, value);
+                return Result.NONE;
+            }
+        } else if (token == Lexer.Token.NUMBER && isDecimal(input, lexer.start(), lexer.end())) {
+            BigInteger value = lexer.bigValue();
+            if (lexer.next() == Lexer.Token.END) {
+                environment.set(variable, value);
+                return Result.NONE;
+            }
+        } else if (token == Lexer.Token.IDENTIFIER && isLatin(input, lexer.start(), lexer.end())) {
+            String assignment = lexer.text();
+            int start = lexer.start();
+            if (lexer.next() == Lexer.Token.END) {
+                BigInteger value = environment.get(assignment);
+                if (value == null) {
+                    return Result.error(ErrorCode.UNKNOWN_VARIABLE, start);
+                }
+                environment.set(variable, value);
+                return Result.NONE;
+            }
+        }
+        return Result.error(ErrorCode.INVALID_ASSIGNMENT, lexer.start());
+    }
+
+    private Result define(CharSequence input, int operator) {
+        Lexer lexer = new Lexer(input, 0, operator);
+        if (lexer.next() != Lexer.Token.IDENTIFIER || !isLatin(input, lexer.start(), lexer.end())
+                || lexer.next() != Lexer.Token.END) {
+            return Result.error(ErrorCode.INVALID_IDENTIFIER, lexer.start());
+        }
+        String variable = Lexer.strip(input, 0, operator);
+        CompiledExpression formula = calculator.prepare(input.subSequence(operator + 2, input.length()));
+        if (!formula.isValid()) {
+            return error(input, operator + 2, formula.error(), formula.offset());
+        }
+        try {
+            environment.define(variable, formula);
+        } catch (CalculatorException e) {
+            return error(input, operator + 2, e.code(), e.offset());
+        }
+        return Result.NONE;
+    }
+
+    private static boolean isLatin(CharSequence input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char ch = input.charAt(i);
+            if (!(ch >= 'A' && ch <= 'Z' || ch >= 'a' && ch <= 'z' || Lexer.isWhitespace(ch))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDecimal(CharSequence input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char ch = input.charAt(i);
+            if (!(ch >= '0' && ch <= '9' || ch == '.' || Lexer.isWhitespace(ch))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
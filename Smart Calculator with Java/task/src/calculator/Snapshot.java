@@ -0,0 +1,211 @@
+package calculator;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Binary image of an environment:
+//   magic, version, scale, count, names section, values section, formula count, formulas, CRC32 of all before it
+// Names are the interned variable names, each once; values are BigInteger.toByteArray() images in
+// the same order; a formula is the index of its name and its expression text. Counts and lengths
+// are unsigned varints, and a section starts with its length in bytes so it can be copied out of the
+// mapped file in one go. Values are held as value * 10^scale, so a snapshot only loads at the scale
+// it was saved with.
+final class Snapshot {
+
+    private static final int MAGIC = 0x43414C43;
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Snapshot() {
+    }
+
+    static int save(Environment environment, int scale, Path file) throws IOException {
+        int[] slots = new int[environment.size()];
+        int count = 0;
+        for (int slot = 0; slot < environment.slots(); slot++) {
+            if (environment.get(slot) != null) {
+                slots[count++] = slot;
+            }
+        }
+        SymbolTable symbols = environment.symbols();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     new CheckedOutputStream(Channels.newOutputStream(channel), checksum), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(scale);
+            writeLength(out, count);
+            ByteArrayOutputStream section = new ByteArrayOutputStream(BUFFER_SIZE);
+            DataOutputStream sectionOut = new DataOutputStream(section);
+            for (int i = 0; i < count; i++) {
+                writeBytes(sectionOut, symbols.name(slots[i]).getBytes(StandardCharsets.ISO_8859_1));
+            }
+            writeLength(out, section.size());
+            section.writeTo(out);
+            section.reset();
+            for (int i = 0; i < count; i++) {
+                writeBytes(sectionOut, environment.get(slots[i]).toByteArray());
+            }
+            writeLength(out, section.size());
+            section.writeTo(out);
+            Map<String, CompiledExpression> formulas = environment.formulas();
+            writeLength(out, formulas.size());
+            for (int i = 0; i < count; i++) {
+                CompiledExpression formula = formulas.get(symbols.name(slots[i]));
+                if (formula != null) {
+                    writeLength(out, i);
+                    writeBytes(out, formula.expression().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            out.flush();
+            out.writeInt((int) checksum.getValue());
+            out.flush();
+            // on disk before the rename makes it the snapshot, or a crash could leave an empty one
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        force(file.toAbsolutePath().getParent());
+        return count;
+    }
+
+    // Makes the files created or renamed in directory durable. Where a directory cannot be opened,
+    // as on Windows, there is nothing to force.
+    static void force(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // not a platform that syncs directories
+        }
+    }
+
+    // Replaces the session's variables and formulas with the ones in file.
+    static int load(Session session, Path file) throws IOException, CalculatorException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new CalculatorException(ErrorCode.INVALID_SNAPSHOT);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int count;
+        try {
+            count = load(session, buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new CalculatorException(ErrorCode.INVALID_SNAPSHOT);
+        }
+        session.environment().restored();
+        return count;
+    }
+
+    private static int load(Session session, MappedByteBuffer buffer) throws CalculatorException {
+        int end = buffer.limit() - Integer.BYTES;
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.slice(0, end));
+        if (buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION || buffer.getInt(end) != (int) checksum.getValue()) {
+            throw new CalculatorException(ErrorCode.INVALID_SNAPSHOT);
+        } else if (buffer.get(5) != session.calculator().scale()) {
+            throw new CalculatorException(ErrorCode.SCALE_MISMATCH);
+        }
+        buffer.position(6);
+
+        Environment environment = session.environment();
+        SymbolTable symbols = environment.symbols();
+        int count = readLength(buffer);
+        int[] slots = new int[count];
+        ByteBuffer section = section(buffer);
+        byte[] bytes = section.array();
+        symbols.reserve(count);
+        for (int i = 0; i < count; i++) {
+            int length = readLength(section);
+            slots[i] = symbols.intern(new String(bytes, section.position(), length, StandardCharsets.ISO_8859_1));
+            section.position(section.position() + length);
+        }
+
+        section = section(buffer);
+        bytes = section.array();
+        environment.clear();
+        environment.reserve(symbols.size());
+        for (int i = 0; i < count; i++) {
+            int length = readLength(section);
+            int position = section.position();
+            if (length == 0) {
+                throw new CalculatorException(ErrorCode.INVALID_SNAPSHOT);
+            } else if (length <= Long.BYTES) {
+                long value = bytes[position];
+                for (int j = 1; j < length; j++) {
+                    value = value << 8 | bytes[position + j] & 0xFF;
+                }
+                environment.put(slots[i], value);
+            } else {
+                environment.put(slots[i], new BigInteger(bytes, position, length));
+            }
+            section.position(position + length);
+        }
+
+        int formulas = readLength(buffer);
+        for (int i = 0; i < formulas; i++) {
+            String name = symbols.name(slots[readLength(buffer)]);
+            byte[] expression = new byte[readLength(buffer)];
+            buffer.get(expression);
+            environment.define(name, session.calculator().compile(new String(expression, StandardCharsets.UTF_8)));
+        }
+        if (buffer.position() != end) {
+            throw new CalculatorException(ErrorCode.INVALID_SNAPSHOT);
+        }
+        return count;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer) throws CalculatorException {
+        byte[] section = new byte[readLength(buffer)];
+        buffer.get(section);
+        return ByteBuffer.wrap(section);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeLength(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeLength(DataOutputStream out, int length) throws IOException {
+        while ((length & ~0x7F) != 0) {
+            out.writeByte(length & 0x7F | 0x80);
+            length >>>= 7;
+        }
+        out.writeByte(length);
+    }
+
+    static int readLength(ByteBuffer buffer) throws CalculatorException {
+        int length = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte next = buffer.get();
+            length |= (next & 0x7F) << shift;
+            if (next >= 0) {
+                if (length < 0) {
+                    break;
+                }
+                return length;
+            }
+        }
+        throw new CalculatorException(ErrorCode.INVALID_SNAPSHOT);
+    }
+}
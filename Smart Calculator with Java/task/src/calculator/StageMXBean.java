@@ -0,0 +1,14 @@
+package calculator;
+
+public interface StageMXBean {
+
+    long getCount();
+
+    long getMeanNanos();
+
+    long getP50Nanos();
+
+    long getP99Nanos();
+
+    long getMaxNanos();
+}
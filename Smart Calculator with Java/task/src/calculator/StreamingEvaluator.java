@@ -0,0 +1,370 @@
+package calculator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+// Evaluates one expression read from a Reader in a single pass: tokens go straight into the
+// shunting-yard stacks and an operator is applied as soon as it leaves the operator stack, so
+// memory grows with the nesting depth (counting chains of ^ and of unary signs as nesting) and
+// the longest token, not with the length of the expression.
+// Results and messages match Session.execute: a syntax error wins over an unknown variable, which
+// wins over the first arithmetic error, so after an arithmetic error the evaluator keeps reading
+// and only reports it once the rest of the expression has been checked.
+final class StreamingEvaluator {
+
+    private static final int BUFFER_SIZE = 1 << 13;
+    private static final int NAME_CACHE_SIZE = 64;
+
+    private final Environment environment;
+    private final Bindings variable = new Bindings(1);
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder text = new StringBuilder();
+    // recently read names and their slots by hash, so a repeated name is not made into a String again
+    private final String[] names = new String[NAME_CACHE_SIZE];
+    private final int[] slots = new int[NAME_CACHE_SIZE];
+    private Reader reader;
+    private int position;
+    private int limit;
+
+    // pending operators; null stands for a left parenthesis
+    private Operation[] operators = new Operation[16];
+    private int operatorCount;
+
+    // operand stack; bigs[i] is null when the value is values[i], and exponents[i] is not null when
+    // the value is bigs/values[i] ^ exponents[i], left unevaluated in case a % follows
+    private long[] values = new long[16];
+    private BigInteger[] bigs = new BigInteger[16];
+    private BigInteger[] exponents = new BigInteger[16];
+    private int top;
+
+    private boolean unknown;
+    private Exception error;
+
+    StreamingEvaluator(Environment environment) {
+        this.environment = environment;
+    }
+
+    BigInteger evaluate(Reader reader) throws IOException, CalculatorException {
+        this.reader = reader;
+        position = 0;
+        limit = 0;
+        operatorCount = 0;
+        top = -1;
+        unknown = false;
+        error = null;
+
+        Type previous = Type.BINARY_OPERATOR;
+        int ch = skipWhitespace(read());
+        while (ch >= 0) {
+            char symbol = (char) ch;
+            if (Character.isDigit(symbol)) {
+                expectOperand(previous);
+                previous = Type.NUMBER;
+                ch = scanNumber(symbol);
+                continue;
+            } else if (Character.isLetter(symbol)) {
+                expectOperand(previous);
+                previous = Type.VARIABLE;
+                ch = scanIdentifier(symbol);
+                continue;
+            }
+            switch (symbol) {
+                case '+', '-', '*', '/', '%', '^' -> {
+                    if (isOperand(previous)) {
+                        previous = Type.BINARY_OPERATOR;
+                        binary(switch (symbol) {
+                            case '+' -> Operation.ADD;
+                            case '-' -> Operation.SUBTRACT;
+                            case '*' -> Operation.MULTIPLY;
+                            case '/' -> Operation.DIVIDE;
+                            case '%' -> Operation.REMAINDER;
+                            default -> Operation.POWER;
+                        });
+                    } else {
+                        previous = Type.UNARY_OPERATOR;
+                        pushOperator(switch (symbol) {
+                            case '+' -> Operation.PLUS;
+                            case '-' -> Operation.NEGATE;
+                            default -> throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+                        });
+                    }
+                }
+                case '(' -> {
+                    expectOperand(previous);
+                    previous = Type.LEFT_PARENTHESIS;
+                    pushOperator(null);
+                }
+                case ')' -> {
+                    if (!isOperand(previous)) {
+                        throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+                    }
+                    previous = Type.RIGHT_PARENTHESIS;
+                    while (operatorCount > 0 && operators[operatorCount - 1] != null) {
+                        apply(operators[--operatorCount]);
+                    }
+                    if (operatorCount == 0) {
+                        throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+                    }
+                    operatorCount--;
+                }
+                default -> throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+            }
+            ch = skipWhitespace(read());
+        }
+
+        if (!isOperand(previous)) {
+            throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+        }
+        while (operatorCount > 0) {
+            Operation operation = operators[--operatorCount];
+            if (operation == null) {
+                throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+            }
+            apply(operation);
+        }
+        materialize(0);
+        if (unknown) {
+            throw new CalculatorException(ErrorCode.UNKNOWN_VARIABLE);
+        } else if (error instanceof CalculatorException e) {
+            throw e;
+        } else if (error != null) {
+            throw (ArithmeticException) error;
+        }
+        return bigs[0] != null ? bigs[0] : BigInteger.valueOf(values[0]);
+    }
+
+    private int scanNumber(char first) throws IOException {
+        long value = 0;
+        boolean big = false;
+        int ch = first;
+        do {
+            int digit = Character.digit((char) ch, 10);
+            if (!big && value > (Long.MAX_VALUE - digit) / 10) {
+                big = true;
+                text.setLength(0);
+                text.append(value);
+            }
+            if (big) {
+                text.append((char) ch);
+            } else {
+                value = value * 10 + digit;
+            }
+            ch = skipWhitespace(read());
+        } while (ch >= 0 && Character.isDigit((char) ch));
+
+        pushOperand();
+        if (big) {
+            bigs[top] = Decimal.parse(text);
+        } else {
+            values[top] = value;
+        }
+        applyUnary();
+        return ch;
+    }
+
+    private int scanIdentifier(char first) throws IOException {
+        text.setLength(0);
+        int hash = 0;
+        int ch = first;
+        do {
+            text.append((char) ch);
+            hash = hash * 31 + ch;
+            ch = skipWhitespace(read());
+        } while (ch >= 0 && Character.isLetter((char) ch));
+
+        pushOperand();
+        int index = hash & NAME_CACHE_SIZE - 1;
+        int slot;
+        if (names[index] != null && names[index].contentEquals(text)) {
+            slot = slots[index];
+        } else {
+            String name = text.toString();
+            slot = environment.symbols().lookup(name);
+            if (slot >= 0) {
+                names[index] = name;
+                slots[index] = slot;
+            }
+        }
+        if (slot < 0 || !environment.load(slot, variable, 0)) {
+            unknown = true;
+        } else {
+            values[top] = variable.values[0];
+            bigs[top] = variable.bigs[0];
+        }
+        applyUnary();
+        return ch;
+    }
+
+    // Unary signs bind to the operand right after them, as in Parser.convertToPostfix.
+    private void applyUnary() {
+        while (operatorCount > 0 && isUnary(operators[operatorCount - 1])) {
+            apply(operators[--operatorCount]);
+        }
+    }
+
+    private void binary(Operation operation) {
+        int priority = priority(operation) + (operation.isRightAssociative() ? 1 : 0);
+        while (operatorCount > 0 && priority(operators[operatorCount - 1]) >= priority) {
+            apply(operators[--operatorCount]);
+        }
+        if (operation != Operation.REMAINDER) {
+            materialize(top);
+        }
+        pushOperator(operation);
+    }
+
+    private void apply(Operation operation) {
+        if (isUnary(operation)) {
+            if (operation == Operation.NEGATE && !failed()) {
+                materialize(top);
+                if (bigs[top] == null && values[top] != Long.MIN_VALUE) {
+                    values[top] = -values[top];
+                } else {
+                    store(top, big(top).negate());
+                }
+            }
+            return;
+        }
+        int x = --top;
+        int y = x + 1;
+        if (failed()) {
+            return;
+        }
+        materialize(y);
+        if (operation != Operation.REMAINDER) {
+            materialize(x);
+        }
+        if (failed()) {
+            return;
+        }
+        try {
+            if (exponents[x] != null) {
+                // x ^ e % m, reduced modulo m while raising to the power like Program.POWER_MOD
+                BigInteger exponent = exponents[x];
+                exponents[x] = null;
+                store(x, Operation.powerMod(big(x), exponent, big(y)));
+            } else if (bigs[x] != null || bigs[y] != null || !exact(operation, x, y)) {
+                if (operation == Operation.POWER) {
+                    exponents[x] = big(y);
+                } else {
+                    store(x, operation.apply(big(x), big(y)));
+                }
+            }
+        } catch (CalculatorException | ArithmeticException e) {
+            error = e;
+        }
+    }
+
+    // Evaluates a power left pending at index.
+    private void materialize(int index) {
+        BigInteger exponent = exponents[index];
+        if (exponent == null || failed()) {
+            return;
+        }
+        exponents[index] = null;
+        try {
+            store(index, Operation.power(big(index), exponent));
+        } catch (CalculatorException | ArithmeticException e) {
+            error = e;
+        }
+    }
+
+    private boolean exact(Operation operation, int x, int y) {
+        try {
+            values[x] = switch (operation) {
+                case ADD -> LongMath.add(values[x], values[y]);
+                case SUBTRACT -> LongMath.subtract(values[x], values[y]);
+                case MULTIPLY -> LongMath.multiply(values[x], values[y]);
+                case DIVIDE -> LongMath.divide(values[x], values[y]);
+                case REMAINDER -> LongMath.remainder(values[x], values[y]);
+                case POWER -> LongMath.power(values[x], values[y]);
+                default -> throw new IllegalStateException("Unknown operation " + operation);
+            };
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private void store(int index, BigInteger result) {
+        if (Operation.fitsLong(result)) {
+            values[index] = result.longValue();
+            bigs[index] = null;
+        } else {
+            bigs[index] = result;
+        }
+    }
+
+    private BigInteger big(int index) {
+        return bigs[index] != null ? bigs[index] : BigInteger.valueOf(values[index]);
+    }
+
+    private boolean failed() {
+        return unknown || error != null;
+    }
+
+    private void pushOperand() {
+        if (++top == values.length) {
+            values = Arrays.copyOf(values, top * 2);
+            bigs = Arrays.copyOf(bigs, top * 2);
+            exponents = Arrays.copyOf(exponents, top * 2);
+        }
+        values[top] = 0;
+        bigs[top] = null;
+        exponents[top] = null;
+    }
+
+    private void pushOperator(Operation operation) {
+        if (operatorCount == operators.length) {
+            operators = Arrays.copyOf(operators, operatorCount * 2);
+        }
+        operators[operatorCount++] = operation;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private int skipWhitespace(int ch) throws IOException {
+        while (ch >= 0 && Lexer.isWhitespace((char) ch)) {
+            ch = read();
+        }
+        return ch;
+    }
+
+    private static int priority(Operation operation) {
+        if (operation == null) {
+            return 0;
+        }
+        return switch (operation) {
+            case ADD, SUBTRACT -> 1;
+            case MULTIPLY, DIVIDE, REMAINDER -> 2;
+            case POWER -> 3;
+            case NEGATE, PLUS -> 4;
+        };
+    }
+
+    private static boolean isUnary(Operation operation) {
+        return operation == Operation.NEGATE || operation == Operation.PLUS;
+    }
+
+    private static boolean isOperand(Type type) {
+        return type == Type.NUMBER || type == Type.VARIABLE || type == Type.RIGHT_PARENTHESIS;
+    }
+
+    private static void expectOperand(Type previous) throws CalculatorException {
+        if (isOperand(previous)) {
+            throw new CalculatorException(ErrorCode.INVALID_EXPRESSION);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package calculator;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hash-conses the subexpressions of every program a calculator assembles, so the same subtree gets
+// the same id in every line. Ids are never reused: when the table grows past MAX_SIZE it is
+// emptied and later subtrees get fresh ids, which only costs the memo of a batch a few misses.
+final class SubexpressionTable {
+
+    private static final int MAX_SIZE = Integer.getInteger("calculator.subexpressions.maxSize", 1 << 20);
+
+    // An instruction and its operands: the constant for PUSH and PUSH_BIG, the symbol table slot
+    // for LOAD, and for operators the ids of up to three operand nodes, -1 where there is none.
+    // equals and hashCode are written out: the generated ones bootstrap through invokedynamic, which
+    // costs calc -e more than the rest of its evaluation.
+    record Node(int opcode, long operand, BigInteger big, int x, int y, int z) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Node node && opcode == node.opcode && operand == node.operand
+                    && x == node.x && y == node.y && z == node.z && Objects.equals(big, node.big);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 31 * opcode + Long.hashCode(operand);
+            hash = 31 * hash + Objects.hashCode(big);
+            hash = 31 * hash + x;
+            hash = 31 * hash + y;
+            return 31 * hash + z;
+        }
+    }
+
+    private final Map<Node, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    int intern(Node node) {
+        if (ids.size() > MAX_SIZE) {
+            ids.clear();
+        }
+        Integer id = ids.get(node);
+        if (id == null) {
+            // a thread that loses the race wastes an id, which is harmless as ids are never reused
+            Integer fresh = next.getAndIncrement();
+            id = ids.putIfAbsent(node, fresh);
+            return id == null ? fresh : id;
+        }
+        return id;
+    }
+
+    // Ids below the returned value were handed out before this call.
+    int mark() {
+        return next.get();
+    }
+}
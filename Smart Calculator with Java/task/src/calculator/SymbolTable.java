@@ -0,0 +1,79 @@
+package calculator;
+
+import java.util.Arrays;
+
+// Interns variable names into dense slots with an open-addressing table, so compiled programs and
+// environments can refer to variables by index instead of hashing names on every access.
+final class SymbolTable {
+
+    // pairs of (hash code, slot + 1); a zero slot marks an empty entry
+    private int[] table = new int[128];
+    private int shift = Integer.numberOfLeadingZeros(64) + 1;
+    private String[] names = new String[32];
+    private int size;
+
+    synchronized int intern(String name) {
+        int hash = name.hashCode();
+        int index = find(name, hash);
+        if (table[index + 1] != 0) {
+            return table[index + 1] - 1;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        table[index] = hash;
+        table[index + 1] = ++size;
+        if (size * 4 > table.length) {
+            rehash(table.length);
+        }
+        return size - 1;
+    }
+
+    synchronized int lookup(String name) {
+        int index = find(name, name.hashCode());
+        return table[index + 1] - 1;
+    }
+
+    // Grows the table once for count more names, instead of doubling repeatedly while they are interned.
+    synchronized void reserve(int count) {
+        int capacity = table.length / 2;
+        while ((long) (size + count) * 2 > capacity && capacity < 1 << 29) {
+            capacity *= 2;
+        }
+        if (capacity > table.length / 2) {
+            names = Arrays.copyOf(names, Math.max(names.length, size + count));
+            rehash(capacity);
+        }
+    }
+
+    synchronized String name(int slot) {
+        return names[slot];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // Returns the index of the entry holding name, or of the empty entry where it belongs.
+    private int find(String name, int hash) {
+        int mask = table.length - 2;
+        // Fibonacci hashing: the high bits of the product depend on every bit of the hash code
+        int index = (hash * 0x9E3779B9 >>> shift) * 2;
+        while (table[index + 1] != 0 && (table[index] != hash || !names[table[index + 1] - 1].equals(name))) {
+            index = (index + 2) & mask;
+        }
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity * 2];
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        for (int slot = 0; slot < size; slot++) {
+            int hash = names[slot].hashCode();
+            int index = find(names[slot], hash);
+            table[index] = hash;
+            table[index + 1] = slot + 1;
+        }
+    }
+}
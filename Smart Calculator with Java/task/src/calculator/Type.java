@@ -0,0 +1,5 @@
+package calculator;
+
+enum Type {
+    NUMBER, VARIABLE, UNARY_OPERATOR, BINARY_OPERATOR, LEFT_PARENTHESIS, RIGHT_PARENTHESIS
+}
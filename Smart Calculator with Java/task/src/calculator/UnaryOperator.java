@@ -0,0 +1,10 @@
+package calculator;
+
+class UnaryOperator extends Operator {
+    final Operation operation;
+
+    UnaryOperator(Type type, int priority, Operation operation, char symbol) {
+        super(type, priority, symbol);
+        this.operation = operation;
+    }
+}
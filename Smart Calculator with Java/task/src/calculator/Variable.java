@@ -0,0 +1,15 @@
+package calculator;
+
+class Variable extends Element {
+    final String variable;
+
+    Variable(Type type, String variable) {
+        super(type);
+        this.variable = variable;
+    }
+
+    @Override
+    public String toString() {
+        return variable;
+    }
+}
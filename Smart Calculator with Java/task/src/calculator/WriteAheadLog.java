@@ -0,0 +1,446 @@
+package calculator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Durable log of the assignments made in one environment, kept in a directory of numbered files:
+//   snapshot-N.bin  the state after every segment up to N
+//   wal-N.log       magic, version and scale, then records of (length, CRC32, payload); a payload
+//                   is a kind, a name and a value or an expression
+// Appends go to an in-memory buffer; a flusher thread writes and fsyncs whatever accumulated while
+// the previous fsync ran, so one fsync commits a whole group of assignments. Full segments are
+// folded into a new snapshot by a background thread, which replays them on a private session.
+final class WriteAheadLog implements Closeable {
+
+    private static final int MAGIC = 0x434C4F47;
+    private static final byte VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = Integer.BYTES + 2;
+    private static final byte SET = 1;
+    private static final byte DEFINE = 2;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final long SEGMENT_SIZE = Long.getLong("calculator.wal.segmentSize", 64 << 20);
+    // wait for the fsync of every assignment instead of acknowledging it once it is buffered
+    private static final boolean SYNC = Boolean.getBoolean("calculator.wal.sync");
+    // appends block while this much is waiting for the flusher, so a slow disk slows writers down
+    private static final int MAX_PENDING = 4 << 20;
+
+    private final Path directory;
+    // values are logged as the session holds them, so compaction replays them at the same scale
+    private final int scale;
+    private final Thread flusher;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object io = new Object();
+    private final Object compaction = new Object();
+    private final CRC32 checksum = new CRC32();
+
+    private Buffer pending = new Buffer();
+    private Buffer spare = new Buffer();
+    private long appended;
+    private long durable;
+    private boolean closed;
+    private IOException failure;
+
+    private FileChannel channel;
+    private long segment;
+    private long segmentSize;
+
+    private WriteAheadLog(Path directory, long segment, int scale) throws IOException {
+        this.directory = directory;
+        this.scale = scale;
+        this.segment = segment;
+        this.channel = create(segment);
+        this.flusher = new Thread(this::flush, "wal-flusher");
+        flusher.setDaemon(true);
+    }
+
+    // Recovers the session from the latest snapshot and the segments written after it, then logs
+    // every further assignment made in its environment.
+    static WriteAheadLog open(Path directory, Session session) throws IOException {
+        Files.createDirectories(directory);
+        long snapshot = latest(directory, "snapshot-");
+        try {
+            if (snapshot > 0) {
+                Snapshot.load(session, file(directory, "snapshot-", snapshot, ".bin"));
+            }
+            for (long segment : numbers(directory, "wal-")) {
+                if (segment > snapshot) {
+                    replay(file(directory, "wal-", segment, ".log"), session, true);
+                }
+            }
+        } catch (CalculatorException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        long last = Math.max(snapshot, latest(directory, "wal-"));
+        WriteAheadLog log = new WriteAheadLog(directory, last + 1, session.calculator().scale());
+        if (last > snapshot) {
+            log.compactor.execute(() -> log.compact(last));
+        } else {
+            log.deleteThrough(snapshot);
+        }
+        session.environment().journal(log);
+        log.flusher.start();
+        return log;
+    }
+
+    void set(String name, BigInteger value) {
+        append(SET, name, value.toByteArray());
+    }
+
+    void define(String name, String expression) {
+        append(DEFINE, name, expression.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void append(byte kind, String name, byte[] value) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.ISO_8859_1);
+        long sequence;
+        synchronized (this) {
+            boolean interrupted = false;
+            while (pending.size() >= MAX_PENDING && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw new UncheckedIOException(failure);
+            }
+            Buffer buffer = pending;
+            int start = buffer.size();
+            buffer.writeInt(0);
+            buffer.writeInt(0);
+            buffer.write(kind);
+            buffer.writeLength(nameBytes.length);
+            buffer.write(nameBytes, 0, nameBytes.length);
+            buffer.write(value, 0, value.length);
+            checksum.reset();
+            checksum.update(buffer.array(), start + HEADER_SIZE, buffer.size() - start - HEADER_SIZE);
+            buffer.putInt(start, buffer.size() - start - HEADER_SIZE);
+            buffer.putInt(start + Integer.BYTES, (int) checksum.getValue());
+            sequence = ++appended;
+            notifyAll();
+        }
+        if (SYNC) {
+            await(sequence);
+        }
+    }
+
+    // Blocks until every record appended so far is on disk.
+    void sync() {
+        long sequence;
+        synchronized (this) {
+            sequence = appended;
+        }
+        await(sequence);
+    }
+
+    private synchronized void await(long sequence) {
+        boolean interrupted = false;
+        while (durable < sequence && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    private void flush() {
+        while (true) {
+            Buffer batch;
+            long sequence;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = spare;
+                sequence = appended;
+                notifyAll();
+            }
+            try {
+                synchronized (io) {
+                    ByteBuffer bytes = ByteBuffer.wrap(batch.array(), 0, batch.size());
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    channel.force(false);
+                    segmentSize += batch.size();
+                    if (segmentSize >= SEGMENT_SIZE) {
+                        long full = roll();
+                        compactor.execute(() -> compact(full));
+                    }
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                batch.reset();
+                spare = batch;
+                durable = sequence;
+                notifyAll();
+            }
+        }
+    }
+
+    // Called after the environment was replaced wholesale by /load: the log no longer describes it,
+    // so the new state is written as a snapshot that supersedes every segment so far.
+    void checkpoint(Environment environment) throws IOException {
+        sync();
+        long full;
+        synchronized (io) {
+            full = roll();
+        }
+        synchronized (compaction) {
+            Snapshot.save(environment, scale, file(directory, "snapshot-", full, ".bin"));
+            deleteThrough(full);
+        }
+    }
+
+    private long roll() throws IOException {
+        channel.close();
+        channel = create(segment + 1);
+        segmentSize = 0;
+        return segment++;
+    }
+
+    // Values are logged as value * 10^scale, so a segment records the scale it was written at.
+    private FileChannel create(long number) throws IOException {
+        FileChannel created = FileChannel.open(segmentFile(number), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(MAGIC).put(VERSION).put((byte) scale).flip();
+        while (header.hasRemaining()) {
+            created.write(header);
+        }
+        // the records forced into the segment are only durable once its name is
+        Snapshot.force(directory);
+        return created;
+    }
+
+    private void compact(long through) {
+        synchronized (compaction) {
+            try {
+                long snapshot = latest(directory, "snapshot-");
+                if (snapshot < through) {
+                    Session replay = new Calculator(Calculator.CACHE_SIZE, scale).newSession();
+                    if (snapshot > 0) {
+                        Snapshot.load(replay, file(directory, "snapshot-", snapshot, ".bin"));
+                    }
+                    for (long segment = snapshot + 1; segment <= through; segment++) {
+                        if (Files.exists(segmentFile(segment))) {
+                            replay(segmentFile(segment), replay, false);
+                        }
+                    }
+                    Snapshot.save(replay.environment(), scale, file(directory, "snapshot-", through, ".bin"));
+                }
+                deleteThrough(Math.max(snapshot, through));
+            } catch (IOException | CalculatorException e) {
+                System.err.println("Log compaction failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Removes the segments a snapshot covers and the snapshots it supersedes; Snapshot.save has made
+    // the snapshot durable by then.
+    private void deleteThrough(long snapshot) throws IOException {
+        for (long segment : numbers(directory, "wal-")) {
+            if (segment <= snapshot) {
+                Files.deleteIfExists(segmentFile(segment));
+            }
+        }
+        for (long older : numbers(directory, "snapshot-")) {
+            if (older < snapshot) {
+                Files.deleteIfExists(file(directory, "snapshot-", older, ".bin"));
+            }
+        }
+    }
+
+    // Applies the records of a segment; a torn or corrupt record ends it, and when recovering the
+    // segment is truncated there so that later appends are not hidden behind it.
+    private static void replay(Path file, Session session, boolean truncate) throws IOException, CalculatorException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < SEGMENT_HEADER_SIZE) {
+            // torn as it was created, before any record
+            return;
+        } else if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+            throw new CalculatorException(ErrorCode.INVALID_LOG);
+        } else if (buffer.get() != session.calculator().scale()) {
+            throw new CalculatorException(ErrorCode.SCALE_MISMATCH);
+        }
+        Environment environment = session.environment();
+        CRC32 checksum = new CRC32();
+        int end = buffer.position();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            checksum.reset();
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != expected) {
+                break;
+            }
+            try {
+                byte kind = payload.get();
+                byte[] name = new byte[Snapshot.readLength(payload)];
+                payload.get(name);
+                byte[] value = new byte[payload.remaining()];
+                payload.get(value);
+                String variable = new String(name, StandardCharsets.ISO_8859_1);
+                if (kind == SET) {
+                    environment.set(variable, new BigInteger(value));
+                } else if (kind == DEFINE) {
+                    environment.define(variable, session.calculator().compile(new String(value, StandardCharsets.UTF_8)));
+                } else {
+                    throw new CalculatorException(ErrorCode.INVALID_LOG);
+                }
+            } catch (BufferUnderflowException | NumberFormatException e) {
+                throw new CalculatorException(ErrorCode.INVALID_LOG);
+            }
+            buffer.position(buffer.position() + length);
+            end = buffer.position();
+        }
+        if (truncate && end < buffer.limit()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+            compactor.shutdown();
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (io) {
+            channel.close();
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private Path segmentFile(long number) {
+        return file(directory, "wal-", number, ".log");
+    }
+
+    private static Path file(Path directory, String prefix, long number, String suffix) {
+        return directory.resolve(String.format("%s%019d%s", prefix, number, suffix));
+    }
+
+    private static long latest(Path directory, String prefix) throws IOException {
+        List<Long> numbers = numbers(directory, prefix);
+        return numbers.isEmpty() ? 0 : numbers.get(numbers.size() - 1);
+    }
+
+    private static List<Long> numbers(Path directory, String prefix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                if (name.startsWith(prefix) && dot > prefix.length()) {
+                    try {
+                        numbers.add(Long.parseLong(name.substring(prefix.length(), dot)));
+                    } catch (NumberFormatException e) {
+                        // not one of ours
+                    }
+                }
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(1 << 16);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeLength(int length) {
+            while ((length & ~0x7F) != 0) {
+                write(length & 0x7F | 0x80);
+                length >>>= 7;
+            }
+            write(length);
+        }
+
+        void putInt(int index, int value) {
+            buf[index] = (byte) (value >>> 24);
+            buf[index + 1] = (byte) (value >>> 16);
+            buf[index + 2] = (byte) (value >>> 8);
+            buf[index + 3] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package calculator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnEvaluatorTest {
+
+    private Calculator calculator;
+    private Session session;
+
+    @Before
+    public void setUp() throws CalculatorException {
+        calculator = new Calculator();
+        session = calculator.newSession();
+        session.execute("c = 7");
+    }
+
+    @Test
+    public void fallsBackToBigIntegerOnOverflow() throws CalculatorException {
+        long[] a = {Long.MAX_VALUE, 3, Long.MIN_VALUE, -4};
+        ResultColumn column = evaluate("a * a - c", Map.of("a", a));
+        BigInteger max = BigInteger.valueOf(Long.MAX_VALUE);
+        assertFalse(column.fitsLong(0));
+        assertEquals(max.multiply(max).subtract(BigInteger.valueOf(7)), column.get(0));
+        assertThrows(ArithmeticException.class, () -> column.longValue(0));
+        assertEquals(2, column.longValue(1));
+        assertEquals(BigInteger.TWO.pow(126).subtract(BigInteger.valueOf(7)), column.get(2));
+        assertEquals(9, column.longValue(3));
+
+        ResultColumn negated = evaluate("-a", Map.of("a", a));
+        assertEquals(-Long.MAX_VALUE, negated.longValue(0));
+        assertEquals(BigInteger.TWO.pow(63), negated.get(2));
+    }
+
+    @Test
+    public void failsOnlyTheRowsThatDivideByZero() throws CalculatorException {
+        long[] a = {10, 10, Long.MIN_VALUE, 10, 10};
+        long[] b = {3, 0, -1, 0, -3};
+        ResultColumn quotients = evaluate("a / b + c", Map.of("a", a, "b", b));
+        assertEquals(10, quotients.longValue(0));
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, quotients.error(1));
+        assertTrue(quotients.isError(1));
+        assertNull(quotients.get(1));
+        assertThrows(ArithmeticException.class, () -> quotients.longValue(1));
+        assertEquals(BigInteger.TWO.pow(63).add(BigInteger.valueOf(7)), quotients.get(2));
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, quotients.error(3));
+        assertEquals(4, quotients.longValue(4));
+        assertFalse(quotients.isError(4));
+
+        // the row by row path, taken for every row when an operand is a BigInteger
+        ResultColumn remainders = evaluate("(a + 2 ^ 70) % b", Map.of("a", a, "b", b));
+        assertEquals(BigInteger.TWO.pow(70).add(BigInteger.TEN).remainder(BigInteger.valueOf(3)), remainders.get(0));
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, remainders.error(1));
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, remainders.error(3));
+        assertEquals(0, remainders.longValue(2));
+    }
+
+    @Test
+    public void failsOnlyTheRowsThatAreTooLarge() throws CalculatorException {
+        ResultColumn column = evaluate("c ^ b", Map.of("b", new long[]{2, 5_000_000, -1, 30}));
+        assertEquals(49, column.longValue(0));
+        assertEquals(ErrorCode.RESULT_TOO_LARGE, column.error(1));
+        assertEquals(0, column.longValue(2));
+        assertEquals(BigInteger.valueOf(7).pow(30), column.get(3));
+    }
+
+    @Test
+    public void matchesTheSessionRowByRow() throws CalculatorException {
+        Random random = new Random(7);
+        int rows = 3000;
+        long[] a = new long[rows];
+        long[] b = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            a[i] = value(random);
+            b[i] = value(random);
+        }
+        for (String line : new String[]{"a + b * c", "a * b - b / a", "(a - b) % (b + 1)", "-a * -b + c ^ 3",
+                "a ^ 2 % b", "c * (a + b) / (a - b)"}) {
+            ResultColumn column = evaluate(line, Map.of("a", a, "b", b));
+            for (int i = 0; i < rows; i++) {
+                session.execute("a = " + a[i]);
+                session.execute("b = " + b[i]);
+                Result expected = session.run(line);
+                assertEquals(line + " at " + i, expected.error(), column.error(i));
+                assertEquals(line + " at " + i, expected.value(), column.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void rejectsAnUnknownVariableForTheWholeColumn() throws CalculatorException {
+        CalculatorException e = assertThrows(CalculatorException.class,
+                () -> evaluate("a + d", Map.of("a", new long[]{1, 2})));
+        assertEquals(ErrorCode.UNKNOWN_VARIABLE, e.code());
+    }
+
+    private ResultColumn evaluate(String expression, Map<String, long[]> columns) throws CalculatorException {
+        return calculator.compile(expression).evaluate(session.environment(), columns);
+    }
+
+    // mostly small values, with zeros and values near the ends of the long range
+    private static long value(Random random) {
+        return switch (random.nextInt(4)) {
+            case 0 -> random.nextInt(5) - 2;
+            case 1 -> random.nextInt(2001) - 1000;
+            case 2 -> (random.nextBoolean() ? Long.MAX_VALUE : Long.MIN_VALUE) + random.nextInt(3) - 1;
+            default -> random.nextLong();
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package calculator;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class CompiledExpressionTest {
+
+    @Test
+    public void rejectsAnEnvironmentOfAnotherCalculator() throws CalculatorException {
+        Calculator first = new Calculator();
+        first.newSession().execute("p = 5");
+        first.newSession().execute("q = 100");
+        CompiledExpression expression = first.compile("p - q");
+
+        // the same names in the opposite slots
+        Session other = new Calculator().newSession();
+        other.execute("q = 100");
+        other.execute("p = 5");
+        assertThrows(IllegalArgumentException.class, () -> expression.evaluate(other.environment()));
+        assertThrows(IllegalArgumentException.class, () -> expression.run(other.environment()));
+
+        Session own = first.newSession();
+        own.execute("q = 100");
+        own.execute("p = 5");
+        assertEquals(BigInteger.valueOf(-95), expression.evaluate(own.environment()));
+    }
+}
@@ -0,0 +1,85 @@
+package calculator;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DecimalTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void parsesLikeBigIntegerAroundTheSplitPoints() {
+        for (int length : lengths()) {
+            for (String digits : digits(length)) {
+                assertEquals(length + " digits", new BigInteger(digits), Decimal.parse(digits));
+            }
+        }
+    }
+
+    @Test
+    public void parsesLeadingZeros() {
+        for (int length : lengths()) {
+            String digits = "0".repeat(length / 2) + randomDigits(length - length / 2);
+            assertEquals(length + " digits", new BigInteger(digits), Decimal.parse(digits));
+        }
+        assertEquals(BigInteger.ZERO, Decimal.parse("0".repeat(5000)));
+    }
+
+    @Test
+    public void printsLikeBigIntegerAroundTheSplitPoints() throws IOException {
+        for (int length : lengths()) {
+            for (String digits : digits(length)) {
+                for (BigInteger value : List.of(new BigInteger(digits), new BigInteger(digits).negate())) {
+                    String expected = value.toString();
+                    assertEquals(length + " digits", expected, Decimal.toString(value));
+                    StringBuilder out = new StringBuilder();
+                    Decimal.write(value, out);
+                    assertEquals(length + " digits", expected, out.toString());
+                }
+            }
+        }
+    }
+
+    // Lengths on either side of the threshold and of every split at 512 * 2^k digits.
+    private static List<Integer> lengths() {
+        List<Integer> lengths = new ArrayList<>(List.of(1, 2, 511, 512, 513, 1024));
+        for (int split = 2048; split <= 8192; split *= 2) {
+            for (int length : new int[]{split - 1, split, split + 1, split + 512, 2 * split - 1}) {
+                lengths.add(length);
+            }
+        }
+        return lengths;
+    }
+
+    // Random digits, the powers of ten and their neighbours, and runs of zeros that a split cuts
+    // into a low half that needs padding.
+    private List<String> digits(int length) {
+        List<String> digits = new ArrayList<>();
+        digits.add(randomDigits(length));
+        digits.add("9".repeat(length));
+        if (length > 1) {
+            digits.add("1" + "0".repeat(length - 1));
+            digits.add("1" + "0".repeat(length - 2) + "1");
+            digits.add(randomDigits(1) + "0".repeat(length - 2) + randomDigits(1));
+            int half = length / 2;
+            digits.add("7".repeat(half) + "0".repeat(length - half - 1) + "3");
+        }
+        return digits;
+    }
+
+    private String randomDigits(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        builder.append((char) ('1' + random.nextInt(9)));
+        for (int i = 1; i < length; i++) {
+            builder.append((char) ('0' + random.nextInt(10)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package calculator;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyGraphTest {
+
+    @Test
+    public void formulaDividingByZeroHasNoValueUntilItsInputsChange() throws CalculatorException {
+        Session session = new Calculator().newSession();
+        session.execute("a = 1");
+        session.execute("b = 1");
+        session.execute("t := a / b");
+        session.execute("u := t + 1");
+
+        session.execute("b = 0");
+        Result result = session.run("t");
+        assertTrue(result.isError());
+        assertEquals(ErrorCode.UNKNOWN_VARIABLE, result.error());
+
+        session.execute("b = 2");
+        assertEquals(BigInteger.ZERO, session.execute("t"));
+        session.execute("a = 8");
+        assertEquals(BigInteger.valueOf(4), session.execute("t"));
+        assertEquals(BigInteger.valueOf(5), session.execute("u"));
+    }
+
+    @Test
+    public void recomputesDownstreamFormulasInOrder() throws CalculatorException {
+        Session session = new Calculator().newSession();
+        session.execute("a = 2");
+        session.execute("b := a * 3");
+        session.execute("c := a + b");
+        session.execute("a = 5");
+        assertEquals(BigInteger.valueOf(15), session.execute("b"));
+        assertEquals(BigInteger.valueOf(20), session.execute("c"));
+    }
+}
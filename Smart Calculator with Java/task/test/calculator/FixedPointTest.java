@@ -0,0 +1,127 @@
+package calculator;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class FixedPointTest {
+
+    private static final int[] SCALES = {1, 2, 6, 12, 18};
+
+    @Test
+    public void roundsHalfAwayFromZero() throws CalculatorException {
+        assertEquals("0.33", evaluate(2, "1 / 3"));
+        assertEquals("0.67", evaluate(2, "2 / 3"));
+        assertEquals("-0.67", evaluate(2, "-2 / 3"));
+        assertEquals("0.01", evaluate(2, "0.005"));
+        assertEquals("-0.01", evaluate(2, "-0.005"));
+        assertEquals("0.00", evaluate(2, "0.004999"));
+        assertEquals("0.13", evaluate(2, "0.25 * 0.5"));
+        assertEquals("-0.13", evaluate(2, "-0.25 * 0.5"));
+        assertEquals("0.2", evaluate(1, "0.25 * 0.5"));
+        assertEquals("1.000000", evaluate(6, "1.0000004"));
+        assertEquals("1.000001", evaluate(6, "1.0000005"));
+        assertEquals("0.000000000000000001", evaluate(18, "1 / 999999999999999999"));
+        assertEquals("2.25", evaluate(2, "1.5 ^ 2"));
+        assertEquals("0.44", evaluate(2, "1.5 ^ -2"));
+        assertEquals("3.333", evaluate(3, "10 / 3"));
+    }
+
+    @Test
+    public void rejectsFractionalExponents() {
+        Session session = new Calculator(Calculator.CACHE_SIZE, 2).newSession();
+        CalculatorException e = assertThrows(CalculatorException.class, () -> session.execute("4 ^ 0.5"));
+        assertEquals(ErrorCode.INVALID_EXPONENT, e.code());
+    }
+
+    @Test
+    public void agreesWithBigDecimal() throws CalculatorException {
+        Random random = new Random(42);
+        for (int scale : SCALES) {
+            BigInteger factor = FixedPoint.factor(scale);
+            for (int i = 0; i < 2000; i++) {
+                BigInteger x = randomValue(random, scale);
+                BigInteger y = randomValue(random, scale);
+                BigDecimal dx = new BigDecimal(x, scale);
+                BigDecimal dy = new BigDecimal(y, scale);
+                assertEquals(dx.multiply(dy).setScale(scale, RoundingMode.HALF_UP).unscaledValue(),
+                        FixedPoint.multiply(x, y, factor));
+                if (y.signum() != 0) {
+                    assertEquals(dx.divide(dy, scale, RoundingMode.HALF_UP).unscaledValue(),
+                            FixedPoint.divide(x, y, factor));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void longOperationsAgreeWithBigInteger() throws CalculatorException {
+        Random random = new Random(7);
+        for (int scale : SCALES) {
+            BigInteger factor = FixedPoint.factor(scale);
+            long f = factor.longValueExact();
+            for (int i = 0; i < 20_000; i++) {
+                long x = random.nextLong() >> random.nextInt(64);
+                long y = random.nextLong() >> random.nextInt(64);
+                check(x + " * " + y, FixedPoint.multiply(BigInteger.valueOf(x), BigInteger.valueOf(y), factor),
+                        () -> LongMath.multiplyScaled(x, y, f));
+                if (y != 0) {
+                    check(x + " / " + y, FixedPoint.divide(BigInteger.valueOf(x), BigInteger.valueOf(y), factor),
+                            () -> LongMath.divideScaled(x, y, f));
+                }
+                long base = random.nextLong() >> random.nextInt(40, 64);
+                long exponent = random.nextInt(-4, 8) * f;
+                if (base != 0 || exponent >= 0) {
+                    check(base + " ^ " + exponent, FixedPoint.power(BigInteger.valueOf(base), BigInteger.valueOf(exponent), factor),
+                            () -> LongMath.powerScaled(base, exponent, f));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void printsExactlyScalePlaces() {
+        assertEquals("0.050", FixedPoint.toString(BigInteger.valueOf(50), 3));
+        assertEquals("-0.050", FixedPoint.toString(BigInteger.valueOf(-50), 3));
+        assertEquals("12.000", FixedPoint.toString(BigInteger.valueOf(12000), 3));
+        assertEquals("-9223372036854775.808", FixedPoint.toString(BigInteger.valueOf(Long.MIN_VALUE), 3));
+        assertEquals("7", FixedPoint.toString(BigInteger.valueOf(7), 0));
+    }
+
+    private static String evaluate(int scale, String expression) throws CalculatorException {
+        Session session = new Calculator(Calculator.CACHE_SIZE, scale).newSession();
+        return FixedPoint.toString(session.execute(expression), scale);
+    }
+
+    // Whole numbers, values near a half unit, and arbitrary values, of either sign.
+    private static BigInteger randomValue(Random random, int scale) {
+        BigInteger factor = FixedPoint.factor(scale);
+        BigInteger value = switch (random.nextInt(3)) {
+            case 0 -> BigInteger.valueOf(random.nextInt(1000)).multiply(factor);
+            case 1 -> factor.divide(BigInteger.TWO).add(BigInteger.valueOf(random.nextInt(3) - 1));
+            default -> new BigInteger(64 + scale * 4, random);
+        };
+        return random.nextBoolean() ? value.negate() : value;
+    }
+
+    private interface LongOperation {
+        long apply();
+    }
+
+    // The long operation may give up on a result that fits, but never returns one that differs.
+    private static void check(String expression, BigInteger expected, LongOperation operation) {
+        long actual;
+        try {
+            actual = operation.apply();
+        } catch (ArithmeticException e) {
+            return;
+        }
+        assertEquals(expression, expected, BigInteger.valueOf(actual));
+    }
+}
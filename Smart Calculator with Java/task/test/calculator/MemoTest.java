@@ -0,0 +1,67 @@
+package calculator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MemoTest {
+
+    private Session session;
+    private Memo memo;
+
+    @Before
+    public void setUp() throws CalculatorException {
+        session = new Calculator().newSession();
+        memo = new Memo(session.environment());
+        session.environment().machine().memo(memo);
+        session.execute("a = 6");
+        session.execute("b = 7");
+    }
+
+    @Test
+    public void reusesASubexpressionUntilAVariableItReadsIsAssigned() throws CalculatorException {
+        assertEquals(BigInteger.valueOf(43), session.execute("a * b + 1"));
+        // a * b was seen before, so this line memoizes it: the first run stores it, later runs reuse it
+        CompiledExpression line = session.calculator().compile("a * b * 2");
+        assertEquals(1, line.program().memoIds.length);
+        assertFalse(hit(line));
+        assertEquals(BigInteger.valueOf(84), line.evaluate(session.environment()));
+        assertTrue(hit(line));
+        assertEquals(BigInteger.valueOf(84), line.evaluate(session.environment()));
+
+        session.execute("c = 1");
+        assertTrue("c is not read by a * b", hit(line));
+        session.execute("a = 10");
+        assertFalse(hit(line));
+        assertEquals(BigInteger.valueOf(140), line.evaluate(session.environment()));
+        assertEquals(BigInteger.valueOf(71), session.execute("a * b + 1"));
+    }
+
+    @Test
+    public void seesFormulasRecomputedAfterAnAssignment() throws CalculatorException {
+        session.execute("f := a + 1");
+        assertEquals(BigInteger.valueOf(50), session.execute("f * b + 1"));
+        assertEquals(BigInteger.valueOf(51), session.execute("f * b + 2"));
+        session.execute("a = 1");
+        assertEquals(BigInteger.valueOf(16), session.execute("f * b + 2"));
+    }
+
+    @Test
+    public void keepsBigValues() throws CalculatorException {
+        session.execute("n = 123456789012345678901234567890");
+        BigInteger square = new BigInteger("123456789012345678901234567890").pow(2);
+        assertEquals(square.add(BigInteger.ONE), session.execute("n * n + 1"));
+        assertEquals(square.subtract(BigInteger.ONE), session.execute("n * n - 1"));
+        session.execute("n = 2");
+        assertEquals(BigInteger.valueOf(3), session.execute("n * n - 1"));
+    }
+
+    private boolean hit(CompiledExpression line) {
+        return memo.load(line.program(), 0, new long[1], new BigInteger[1], 0);
+    }
+}
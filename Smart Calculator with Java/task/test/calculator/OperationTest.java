@@ -0,0 +1,110 @@
+package calculator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class OperationTest {
+
+    private Session session;
+
+    @Before
+    public void setUp() {
+        session = new Calculator().newSession();
+    }
+
+    @Test
+    public void powerIsRightAssociativeAndBindsTighterThanMultiplication() throws CalculatorException {
+        assertEquals(512, evaluate("2 ^ 3 ^ 2"));
+        assertEquals(64, evaluate("(2 ^ 3) ^ 2"));
+        assertEquals(18, evaluate("2 * 3 ^ 2"));
+        assertEquals(16, evaluate("2 ^ 3 * 2"));
+        assertEquals(11, evaluate("2 + 3 ^ 2"));
+        assertEquals(1, evaluate("2 ^ 2 ^ -1"));
+        assertEquals(24, evaluate("2 ^ 3 * 3"));
+        assertEquals(6, evaluate("12 / 2 ^ 1"));
+    }
+
+    @Test
+    public void unaryMinusAppliesToTheBase() throws CalculatorException {
+        assertEquals(4, evaluate("-2 ^ 2"));
+        assertEquals(-27, evaluate("-3 ^ 3"));
+        assertEquals(-4, evaluate("-(2 ^ 2)"));
+        assertEquals(-4, evaluate("0 - 2 ^ 2"));
+        assertEquals(-18, evaluate("-2 * 3 ^ 2"));
+    }
+
+    @Test
+    public void negativeExponentsTruncateLikeDivision() throws CalculatorException {
+        assertEquals(0, evaluate("2 ^ -1"));
+        assertEquals(0, evaluate("-2 ^ -2"));
+        assertEquals(1, evaluate("1 ^ -5"));
+        assertEquals(-1, evaluate("(-1) ^ -3"));
+        assertEquals(1, evaluate("(-1) ^ -4"));
+        assertEquals(1, evaluate("0 ^ 0"));
+        session.execute("z = 0");
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, session.run("z ^ -1").error());
+    }
+
+    @Test
+    public void remainderTakesTheSignOfTheDividend() throws CalculatorException {
+        assertEquals(-1, evaluate("-7 % 3"));
+        assertEquals(1, evaluate("7 % -3"));
+        assertEquals(-1, evaluate("-7 % -3"));
+        assertEquals(2, evaluate("2 + 7 % 5 * 0"));
+        session.execute("a = -7");
+        session.execute("b = 3");
+        assertEquals(-1, evaluate("a % b"));
+        BigInteger big = BigInteger.TWO.pow(100).negate();
+        assertEquals(big.remainder(BigInteger.valueOf(7)), session.execute("-(2 ^ 100) % 7"));
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, session.run("a % (b - 3)").error());
+    }
+
+    @Test
+    public void powerModuloMatchesPowThenRemainder() throws CalculatorException {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            long x = random.nextInt(201) - 100;
+            int y = random.nextInt(300);
+            BigInteger m = random.nextBoolean() ? BigInteger.valueOf(random.nextInt(2001) - 1000)
+                    : new BigInteger(100, random).subtract(BigInteger.TWO.pow(99));
+            if (m.signum() == 0) {
+                continue;
+            }
+            BigInteger expected = BigInteger.valueOf(x).pow(y).remainder(m);
+            String line = "(" + x + ") ^ " + y + " % (" + m + ")";
+            // folded by the optimizer
+            assertEquals(line, expected, session.execute(line));
+            // POWER_MOD at run time, on longs or BigIntegers
+            session.execute("x = " + x);
+            session.execute("y = " + y);
+            session.execute("m = " + m);
+            assertEquals(line, expected, session.execute("x ^ y % m"));
+        }
+        // the power itself would be too large
+        assertEquals(4, evaluate("3 ^ 4000000 % 7"));
+        session.execute("x = 3");
+        assertEquals(4, evaluate("x ^ 4000000 % 7"));
+    }
+
+    @Test
+    public void rejectsResultsAboveTheLimit() throws CalculatorException {
+        for (String line : new String[]{"9 ^ 9 ^ 9", "3 ^ 4000000", "2 ^ " + Operation.MAX_RESULT_BITS,
+                "2 ^ 3000000 * 2 ^ 3000000", "(2 ^ 2000000) ^ 3"}) {
+            Result result = session.run(line);
+            assertEquals(line, ErrorCode.RESULT_TOO_LARGE, result.error());
+            assertEquals(line, -1, result.offset());
+        }
+        session.execute("x = 3");
+        assertEquals(ErrorCode.RESULT_TOO_LARGE, session.run("x ^ 4000000").error());
+        assertEquals(1_000_001, session.execute("2 ^ 1000000").bitLength());
+    }
+
+    private long evaluate(String line) throws CalculatorException {
+        return session.execute(line).longValueExact();
+    }
+}
@@ -0,0 +1,78 @@
+package calculator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+public class ParallelBatchTest {
+
+    private Path in;
+    private Path sequential;
+    private Path parallel;
+
+    @Before
+    public void setUp() throws IOException {
+        in = Files.createTempFile("calculator", ".in");
+        sequential = Files.createTempFile("calculator", ".out");
+        parallel = Files.createTempFile("calculator", ".out");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(in);
+        Files.deleteIfExists(sequential);
+        Files.deleteIfExists(parallel);
+    }
+
+    @Test
+    public void divisionByZeroStopsAtTheSameLineAsTheSequentialBatch() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("a = 3");
+        for (int i = 0; i < 3000; i++) {
+            lines.add(i == 2000 ? "a / (a - 3)" : i % 7 == 0 ? "2 +* " + i : "a * " + i);
+        }
+        Files.write(in, lines);
+
+        assertThrows(ArithmeticException.class, () -> new Batch(new Calculator().newSession()).run(in, sequential));
+        assertThrows(ArithmeticException.class,
+                () -> new ParallelBatch(new Calculator().newSession()).run(in, parallel));
+        List<String> expected = Files.readAllLines(sequential);
+        assertEquals(2000, expected.size());
+        assertEquals(expected, Files.readAllLines(parallel));
+    }
+
+    @Test
+    public void runsNoAssignmentAfterALineThatDividesByZero() throws IOException, CalculatorException {
+        Path saved = Files.createTempFile("calculator", ".bin");
+        Files.write(in, List.of("a = 1", "z = 0", "a + 1", "a / z", "a = 2", "b := a * 10", "/save " + saved, "a"));
+        Session session = new Calculator().newSession();
+        try {
+            assertThrows(ArithmeticException.class, () -> new ParallelBatch(session).run(in, parallel));
+            assertEquals(List.of("2"), Files.readAllLines(parallel));
+            assertEquals(BigInteger.ONE, session.execute("a"));
+            assertFalse(session.environment().contains("b"));
+            assertEquals(0, Files.size(saved));
+        } finally {
+            Files.delete(saved);
+        }
+    }
+
+    @Test
+    public void matchesTheSequentialBatch() throws IOException {
+        Files.write(in, List.of("a = 2", "b := a ^ 10", "b - 1", "x + 1", "a = 3", "b", "", "/help", "/exit", "4"));
+        new Batch(new Calculator().newSession()).run(in, sequential);
+        new ParallelBatch(new Calculator().newSession()).run(in, parallel);
+        assertEquals(Files.readAllLines(sequential), Files.readAllLines(parallel));
+    }
+}
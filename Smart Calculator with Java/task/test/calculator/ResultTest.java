@@ -0,0 +1,86 @@
+package calculator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class ResultTest {
+
+    private Session session;
+
+    @Before
+    public void setUp() throws CalculatorException {
+        session = new Calculator().newSession();
+        session.execute("a = 1");
+    }
+
+    @Test
+    public void reportsAnUnknownVariableAtItsOffset() throws CalculatorException {
+        assertError(ErrorCode.UNKNOWN_VARIABLE, 4, "a + b");
+        assertError(ErrorCode.UNKNOWN_VARIABLE, 5, "a +  b * zz");
+        assertError(ErrorCode.UNKNOWN_VARIABLE, 2, "  b");
+        assertError(ErrorCode.UNKNOWN_VARIABLE, 4, "a = b");
+        // whitespace inside a name is dropped, as it always was
+        assertError(ErrorCode.UNKNOWN_VARIABLE, 0, "a b");
+    }
+
+    @Test
+    public void reportsAnUnbalancedParenthesis() throws CalculatorException {
+        assertError(ErrorCode.INVALID_EXPRESSION, 6, "(1 + 2");
+        assertError(ErrorCode.INVALID_EXPRESSION, 5, "1 + 2)");
+        assertError(ErrorCode.INVALID_EXPRESSION, 4, "((a)");
+    }
+
+    @Test
+    public void reportsOtherSyntaxErrorsAtTheirOffset() throws CalculatorException {
+        assertError(ErrorCode.INVALID_EXPRESSION, 3, "1 +");
+        assertError(ErrorCode.INVALID_EXPRESSION, 2, "1 $ 2");
+        assertError(ErrorCode.INVALID_ASSIGNMENT, 6, "a = 1 = 2");
+        assertError(ErrorCode.INVALID_ASSIGNMENT, 5, "x = 3a");
+        assertError(ErrorCode.INVALID_ASSIGNMENT, 5, "a = -");
+        assertError(ErrorCode.INVALID_IDENTIFIER, 1, "a1 = 3");
+    }
+
+    @Test
+    public void reportsArithmeticErrorsWithoutAnOffset() throws CalculatorException {
+        assertError(ErrorCode.DIVISION_BY_ZERO, -1, "1 / 0");
+        assertError(ErrorCode.DIVISION_BY_ZERO, -1, "1 / (a - 1)");
+        assertError(ErrorCode.DIVISION_BY_ZERO, -1, "a % 0");
+        assertError(ErrorCode.RESULT_TOO_LARGE, -1, "2 ^ 9999999");
+    }
+
+    @Test
+    public void carriesAValueOrNothing() {
+        Result value = session.run("a + 1");
+        assertFalse(value.isError());
+        assertNull(value.error());
+        assertEquals(BigInteger.TWO, value.value());
+        assertEquals(-1, value.offset());
+
+        Result assignment = session.run("b = 5");
+        assertFalse(assignment.isError());
+        assertNull(assignment.value());
+        assertEquals(BigInteger.valueOf(6), session.run("a + b").value());
+    }
+
+    // run reports what execute throws
+    private void assertError(ErrorCode error, int offset, String line) throws CalculatorException {
+        Result result = session.run(line);
+        assertTrue(line, result.isError());
+        assertNull(line, result.value());
+        assertEquals(line, error, result.error());
+        assertEquals(line, offset, result.offset());
+        if (error != ErrorCode.DIVISION_BY_ZERO) {
+            CalculatorException e = assertThrows(CalculatorException.class, () -> session.execute(line));
+            assertEquals(line, error, e.code());
+            assertEquals(line, offset, e.offset());
+        }
+    }
+}
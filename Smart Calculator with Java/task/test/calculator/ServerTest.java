@@ -0,0 +1,109 @@
+package calculator;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class ServerTest {
+
+    @Test(timeout = 60_000)
+    public void answersPipelinedLinesPastTheHighWaterMark() throws IOException, InterruptedException {
+        // about 95 kB per reply, so a single write of 60 lines holds lines back at HIGH_WATER
+        int lines = 60;
+        String expected = BigInteger.valueOf(9).pow(99999).toString();
+        try (Socket socket = connect(start(new Calculator()))) {
+            socket.setSoTimeout(30_000);
+            socket.getOutputStream().write("9^99999\n".repeat(lines).getBytes(StandardCharsets.UTF_8));
+            BufferedReader replies = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (int i = 0; i < lines; i++) {
+                assertEquals("reply " + i, expected, replies.readLine());
+            }
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void answersADivisionByZeroWithAnErrorAndKeepsTheSession() throws IOException, InterruptedException {
+        try (Socket socket = connect(start(new Calculator()))) {
+            socket.setSoTimeout(30_000);
+            socket.getOutputStream().write("a = 0\n1 / a\n7 % 0\n1 / (\na + 2\n".getBytes(StandardCharsets.UTF_8));
+            BufferedReader replies = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("", replies.readLine());
+            assertEquals(ErrorCode.DIVISION_BY_ZERO.message(), replies.readLine());
+            assertEquals(ErrorCode.DIVISION_BY_ZERO.message(), replies.readLine());
+            assertEquals(ErrorCode.INVALID_EXPRESSION.message(), replies.readLine());
+            assertEquals("2", replies.readLine());
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void answersOtherConnectionsWhileALineIsSlow() throws IOException, InterruptedException {
+        int port = start(new Calculator());
+        // connections go to the loops in turn, so the first and the last share a loop
+        Socket[] sockets = new Socket[Runtime.getRuntime().availableProcessors() + 1];
+        try {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i] = connect(port);
+                sockets[i].setSoTimeout(30_000);
+            }
+            Socket slow = sockets[0];
+            Socket fast = sockets[sockets.length - 1];
+            // seconds to print
+            slow.getOutputStream().write("2^3000000\n".getBytes(StandardCharsets.UTF_8));
+            Thread.sleep(100);
+            fast.getOutputStream().write("1 + 1\n".getBytes(StandardCharsets.UTF_8));
+            BufferedReader replies = new BufferedReader(
+                    new InputStreamReader(fast.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("2", replies.readLine());
+            assertEquals(0, slow.getInputStream().available());
+            replies = new BufferedReader(new InputStreamReader(slow.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals(903090, replies.readLine().length());
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    static int start(Calculator calculator) throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                new Server(calculator, port).run();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return port;
+    }
+
+    static Socket connect(int port) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return new Socket("localhost", port);
+            } catch (ConnectException e) {
+                if (attempt == 100) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package calculator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotTest {
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("calculator", ".snapshot");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void roundTripsValuesAndFormulas() throws IOException, CalculatorException {
+        Session saved = new Calculator().newSession();
+        saved.execute("a = 7");
+        saved.execute("b = -9223372036854775808");
+        saved.execute("c = 98765432109876543210987654321");
+        saved.execute("d = 0");
+        saved.execute("f := a * c - b");
+        assertEquals(5, Snapshot.save(saved.environment(), 0, file));
+
+        Session loaded = new Calculator().newSession();
+        loaded.execute("x = 1");
+        assertEquals(5, Snapshot.load(loaded, file));
+        for (String name : new String[]{"a", "b", "c", "d", "f"}) {
+            assertEquals(name, saved.environment().get(name), loaded.environment().get(name));
+        }
+        assertNull(loaded.environment().get("x"));
+        assertTrue(loaded.environment().isFormula("f"));
+        loaded.execute("a = 1");
+        assertEquals(new BigInteger("98765432119099915247842430129"), loaded.execute("f"));
+    }
+
+    @Test
+    public void rejectsACorruptFileAndKeepsTheSession() throws IOException, CalculatorException {
+        Session saved = new Calculator().newSession();
+        saved.execute("a = 12345");
+        saved.execute("b = 67890");
+        Snapshot.save(saved.environment(), 0, file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(file, bytes);
+
+        Session loaded = new Calculator().newSession();
+        loaded.execute("x = 1");
+        CalculatorException e = assertThrows(CalculatorException.class, () -> Snapshot.load(loaded, file));
+        assertEquals(ErrorCode.INVALID_SNAPSHOT, e.code());
+        assertEquals(BigInteger.ONE, loaded.environment().get("x"));
+        assertNull(loaded.environment().get("a"));
+    }
+
+    @Test
+    public void loadsOnlyAtTheScaleItWasSavedWith() throws IOException, CalculatorException {
+        Session saved = new Calculator(Calculator.CACHE_SIZE, 6).newSession();
+        saved.execute("a = 1.5");
+        Snapshot.save(saved.environment(), 6, file);
+
+        for (int scale : new int[]{0, 2}) {
+            Session other = new Calculator(Calculator.CACHE_SIZE, scale).newSession();
+            CalculatorException e = assertThrows(CalculatorException.class, () -> Snapshot.load(other, file));
+            assertEquals(ErrorCode.SCALE_MISMATCH, e.code());
+        }
+        Session loaded = new Calculator(Calculator.CACHE_SIZE, 6).newSession();
+        Snapshot.load(loaded, file);
+        assertEquals(BigInteger.valueOf(1_500_000), loaded.execute("a"));
+    }
+}
@@ -0,0 +1,77 @@
+package calculator;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class StreamingEvaluatorTest {
+
+    private static final String[] LINES = {
+            "1 + 2", "  -3 --2 ", "2 ^ 3 ^ 2", "-2 ^ 2 * 3", "3 ^ 4000000 % 7", "a * b - 10", "a % -b",
+            "9223372036854775807 + 1", "2 ^ 200 - a", "(a + b) * (a - b)", "c + 1", "1 +", "(1 + 2", "1 + 2)",
+            "a b", "1 + c +", "2 ^ 3000000 * 2 ^ 3000000", "", "   ", " /help", "/help", "/helps", "/exit now",
+    };
+    private static final String[] TERMINATORS = {"", "\n", "\r\n"};
+
+    @Test
+    public void printsWhatTheReplPrintsForALine() throws IOException {
+        for (String line : LINES) {
+            String expected = repl(line);
+            for (String terminator : TERMINATORS) {
+                assertEquals("[" + line + terminator + "]", expected, stream(line + terminator));
+            }
+        }
+    }
+
+    @Test
+    public void exitsLikeTheRepl() throws IOException {
+        for (String terminator : TERMINATORS) {
+            assertEquals("Bye!" + System.lineSeparator(), stream("/exit" + terminator));
+        }
+    }
+
+    @Test
+    public void readsAnExpressionAcrossLines() throws IOException {
+        assertEquals(repl("1 + 2 * a - b"), stream("1 +\r\n2 *\r\na\r\n- b\r\n"));
+        assertEquals(repl("2 ^ 3 ^ 2 % 7"), stream("2 ^\n3 ^ 2\n% 7"));
+    }
+
+    @Test
+    public void endsOnADivisionByZeroLikeTheRepl() {
+        for (String line : new String[]{"1 / 0", "a % (b - 3)", "2 ^ 100 / (a - a)", "0 ^ -1"}) {
+            ArithmeticException expected = assertThrows(ArithmeticException.class, () -> repl(line));
+            for (String terminator : TERMINATORS) {
+                ArithmeticException e = assertThrows(ArithmeticException.class, () -> stream(line + terminator));
+                assertEquals(line, expected.getMessage(), e.getMessage());
+            }
+        }
+    }
+
+    private static String repl(String line) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Main.repl(session(), new Scanner(line + "\n/exit\n"), new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        String output = bytes.toString(StandardCharsets.UTF_8);
+        return output.substring(0, output.length() - ("Bye!" + System.lineSeparator()).length());
+    }
+
+    private static String stream(String input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Main.stream(session(), new StringReader(input), new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Session session() {
+        Session session = new Calculator().newSession();
+        Main.respond(session, "a = 7");
+        Main.respond(session, "b = 3");
+        return session;
+    }
+}
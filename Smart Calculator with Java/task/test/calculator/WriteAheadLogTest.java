@@ -0,0 +1,116 @@
+package calculator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class WriteAheadLogTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("calculator");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void recoversTheRecordsBeforeATornTailAndAppendsAfterThem() throws IOException, CalculatorException {
+        Session written = new Calculator().newSession();
+        try (WriteAheadLog log = WriteAheadLog.open(directory, written)) {
+            written.execute("a = 1");
+            written.execute("b = 123456789012345678901234567890");
+            written.execute("c = 3");
+            log.sync();
+        }
+        Path segment = files("wal-").get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        Session recovered = open();
+        assertEquals(BigInteger.ONE, recovered.environment().get("a"));
+        assertEquals(new BigInteger("123456789012345678901234567890"), recovered.environment().get("b"));
+        assertNull(recovered.environment().get("c"));
+
+        Session again = open("d = 4");
+        assertEquals(BigInteger.ONE, again.environment().get("a"));
+        assertNull(again.environment().get("c"));
+        assertEquals(BigInteger.valueOf(4), again.environment().get("d"));
+    }
+
+    @Test
+    public void compactsSegmentsIntoASnapshotThatRecoveryReads() throws IOException, CalculatorException {
+        open("a = 2", "f := a * 10", "b = 5");
+        // the second open replays the first segment and compacts it while appending to a new one
+        open("a = 3", "g := f + b");
+        assertEquals(1, files("snapshot-").size());
+        assertFalse(files("wal-").contains(directory.resolve(String.format("wal-%019d.log", 1))));
+
+        Session recovered = open();
+        assertEquals(BigInteger.valueOf(30), recovered.execute("f"));
+        assertEquals(BigInteger.valueOf(35), recovered.execute("g"));
+        recovered.execute("b = 1");
+        assertEquals(BigInteger.valueOf(31), recovered.execute("g"));
+    }
+
+    @Test
+    public void replaysOnlyAtTheScaleItWasWrittenWith() throws IOException, CalculatorException {
+        Session written = new Calculator(Calculator.CACHE_SIZE, 3).newSession();
+        try (WriteAheadLog log = WriteAheadLog.open(directory, written)) {
+            written.execute("a = 2.5");
+            log.sync();
+        }
+
+        IOException e = assertThrows(IOException.class,
+                () -> WriteAheadLog.open(directory, new Calculator().newSession()).close());
+        assertTrue(e.getMessage(), e.getCause() instanceof CalculatorException cause
+                && cause.code() == ErrorCode.SCALE_MISMATCH);
+
+        Session recovered = new Calculator(Calculator.CACHE_SIZE, 3).newSession();
+        WriteAheadLog.open(directory, recovered).close();
+        assertEquals(BigInteger.valueOf(2500), recovered.execute("a"));
+    }
+
+    // Recovers a session from the directory, runs lines in it and closes the log.
+    private Session open(String... lines) throws IOException, CalculatorException {
+        Session session = new Calculator().newSession();
+        try (WriteAheadLog log = WriteAheadLog.open(directory, session)) {
+            for (String line : lines) {
+                session.execute(line);
+            }
+            log.sync();
+        }
+        return session;
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+}